@@ -0,0 +1,185 @@
+package net.solidhorizons.stims.bench;
+
+import net.solidhorizons.stims.stim.StimEffect;
+import net.solidhorizons.stims.stim.StimEffectSink;
+import net.solidhorizons.stims.stim.StimStage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// Cost of resolving which effects a use of a random mix of stims applies: the original translation key
+// lookup plus string switch against the StimStage objects the definition loader compiles, indexed by stim id.
+// Applying the effects is replaced by a sink so no level is needed. The stages are built like the shipped
+// definitions, only without the MobEffect instances, which would need the game registries.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EffectResolutionBenchmark {
+
+    private static final int USES = 1024;
+    private static final int TICKS_PER_SECOND = 20;
+
+    // Stand-in for LivingEntity.addEffect
+    interface EffectSink {
+        void addEffect(int effect, int durationTicks, int amplifier);
+    }
+
+    private static final String[] TYPES = {
+            "item.stims.propital_injector", "item.stims.xtg_twelve_injector", "item.stims.sj_six_injector",
+            "item.stims.etg_c_injector", "item.stims.morphine_injector", "item.stims.obdolbos_injector",
+            "item.stims.obdolbos_two_injector"
+    };
+
+    // Initial effect durations in seconds, indexed like TYPES
+    private static final int[] DURATIONS = {120, 1, 120, 60, 150, 60, 60};
+
+    // Initial stages as compiled from the shipped definitions, indexed like TYPES
+    private static final StimStage[] STAGES = {
+            stage(false, effects(120, 0)),
+            stage(true),
+            stage(false, effects(120, 2)),
+            stage(false, effects(60, 0, 2, 2)),
+            stage(false, effects(150, 1, 1)),
+            stage(false, effects(60, 1, 1), effects(60, 1, 1), effects(60, 0, 0, 0), effects(60, 100)),
+            stage(false, effects(60, 1, 1, 1))
+    };
+
+    private final Map<String, Integer> legacyConfig = new HashMap<>();
+    private int[] stimIds;
+    private String[] stimTypes;
+    // Random bits for each use, like StimRandom hands out
+    private long[] bits;
+    // The same mix with obdolbos left in, to include rolls through the alias table
+    private int[] allStimIds;
+    private EffectSink sink;
+    private StimEffectSink stageSink;
+
+    @Setup(Level.Trial)
+    public void setup(Blackhole blackhole) {
+        for (int i = 0; i < TYPES.length; i++) {
+            // Copy the keys so lookups hash strings like getDescriptionId() results would
+            legacyConfig.put(new String(TYPES[i]), DURATIONS[i]);
+        }
+
+        SplittableRandom random = new SplittableRandom(42);
+        stimIds = new int[USES];
+        stimTypes = new String[USES];
+        bits = new long[USES];
+        allStimIds = new int[USES];
+        for (int i = 0; i < USES; i++) {
+            // Skip obdolbos, its random outcome would dominate both variants
+            int stimId = random.nextInt(TYPES.length);
+            stimIds[i] = stimId == 5 ? 6 : stimId;
+            stimTypes[i] = TYPES[stimIds[i]];
+            bits[i] = random.nextLong();
+            allStimIds[i] = stimId;
+        }
+
+        sink = (effect, durationTicks, amplifier) -> {
+            blackhole.consume(effect);
+            blackhole.consume(durationTicks);
+            blackhole.consume(amplifier);
+        };
+        stageSink = new StimEffectSink() {
+            @Override
+            public void clearEffects() {
+                blackhole.consume(true);
+            }
+
+            @Override
+            public void addEffect(StimEffect effect, int amplifierBonus, float durationFactor) {
+                blackhole.consume(effect.effect());
+                blackhole.consume(effect.durationTicks());
+                blackhole.consume(effect.amplifier() + amplifierBonus);
+            }
+        };
+    }
+
+    @Benchmark
+    public void legacyStringSwitch() {
+        for (String stimType : stimTypes) {
+            Integer duration = legacyConfig.get(stimType);
+            if (duration == null) continue;
+            int ticks = duration * TICKS_PER_SECOND;
+            switch (stimType) {
+                case "item.stims.propital_injector":
+                    sink.addEffect(0, ticks, 0);
+                    break;
+                case "item.stims.etg_c_injector":
+                    sink.addEffect(2, ticks, 0);
+                    sink.addEffect(3, ticks, 2);
+                    sink.addEffect(0, ticks, 2);
+                    break;
+                case "item.stims.morphine_injector":
+                    sink.addEffect(4, ticks, 1);
+                    sink.addEffect(5, ticks, 1);
+                    break;
+                case "item.stims.obdolbos_two_injector":
+                    sink.addEffect(1, ticks, 1);
+                    sink.addEffect(7, ticks, 1);
+                    sink.addEffect(6, ticks, 1);
+                    break;
+                case "item.stims.xtg_twelve_injector":
+                    break;
+                case "item.stims.sj_six_injector":
+                    sink.addEffect(1, ticks, 2);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    @Benchmark
+    public void compiledStages() {
+        for (int i = 0; i < USES; i++) {
+            StimStage stage = STAGES[stimIds[i]];
+            stage.apply(stageSink, stage.roll(bits[i]), 0, 1);
+        }
+    }
+
+    @Benchmark
+    public void compiledStagesWithOutcomes() {
+        for (int i = 0; i < USES; i++) {
+            StimStage stage = STAGES[allStimIds[i]];
+            stage.apply(stageSink, stage.roll(bits[i]), 0, 1);
+        }
+    }
+
+    // A stage with one equally weighted outcome per effect array, or none at all
+    private static StimStage stage(boolean clearEffects, StimEffect[]... outcomes) {
+        if (outcomes.length == 0) {
+            outcomes = new StimEffect[][]{new StimEffect[0]};
+        }
+        double[] weights = new double[outcomes.length];
+        Arrays.fill(weights, 1);
+        return new StimStage(clearEffects, outcomes, weights);
+    }
+
+    // One effect per amplifier, all with the same duration in seconds
+    private static StimEffect[] effects(int durationSeconds, int... amplifiers) {
+        StimEffect[] effects = new StimEffect[amplifiers.length];
+        for (int i = 0; i < amplifiers.length; i++) {
+            effects[i] = new StimEffect(null, durationSeconds * TICKS_PER_SECOND, amplifiers[i]);
+        }
+        return effects;
+    }
+}
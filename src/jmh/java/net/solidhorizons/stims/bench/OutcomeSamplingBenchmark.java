@@ -0,0 +1,65 @@
+package net.solidhorizons.stims.bench;
+
+import net.solidhorizons.stims.stim.AliasTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// Cost of picking a weighted outcome: the alias table the stages use against walking the cumulative weights.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OutcomeSamplingBenchmark {
+
+    @Param({"4", "16", "64"})
+    public int outcomes;
+
+    private AliasTable table;
+    private double[] cumulative;
+    private SplittableRandom random;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        random = new SplittableRandom(42);
+        double[] weights = new double[outcomes];
+        cumulative = new double[outcomes];
+        double total = 0;
+        for (int i = 0; i < outcomes; i++) {
+            weights[i] = 1 + random.nextInt(10);
+            total += weights[i];
+            cumulative[i] = total;
+        }
+        table = new AliasTable(weights);
+    }
+
+    @Benchmark
+    public int aliasTable() {
+        return table.sample(random.nextLong());
+    }
+
+    @Benchmark
+    public int linearScan() {
+        double target = random.nextDouble() * cumulative[cumulative.length - 1];
+        for (int i = 0; i < cumulative.length - 1; i++) {
+            if (target < cumulative[i]) {
+                return i;
+            }
+        }
+        return cumulative.length - 1;
+    }
+}
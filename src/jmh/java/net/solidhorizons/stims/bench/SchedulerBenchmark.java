@@ -0,0 +1,167 @@
+package net.solidhorizons.stims.bench;
+
+import net.solidhorizons.stims.stim.DoseQueue;
+import net.solidhorizons.stims.stim.StimDoses;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// Cost of one server tick of after-effect scheduling, for the original global list scan and for the
+// per-player doses drained from a min-heap of wake-ups.
+// Every dose that comes due is given again right away, so the number of pending doses stays constant
+// over the run and every measured tick sees the configured load. The heap side builds its doses like
+// StimScheduler does: an injection of a pending stim replaces its dose and a player never has more than
+// maxPendingDoses of them, so it ends up with far fewer doses than the legacy list, which kept every use.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SchedulerBenchmark {
+
+    // Delays of the built-in stims in ticks, indexed by stim id
+    static final int[] DELAYS = {1800, 1800, 3600, 1800, 1800, 3000, 40};
+    static final int STIM_TYPES = DELAYS.length;
+
+    @Param({"1", "10", "100", "500"})
+    public int players;
+
+    @Param({"0", "100", "1000", "10000"})
+    public int pending;
+
+    // The server config's default
+    @Param({"16"})
+    public int maxPendingDoses;
+
+    private long tick;
+    private static long applied;
+
+    // Current implementation: doses per player plus a heap of wake-ups
+    private StimDoses[] doses;
+    private DoseQueue queue;
+
+    // Original implementation: one synchronized list scanned by every stim item for every player
+    private List<LegacyUse> legacyList;
+    private Map<String, Integer> legacyDelays;
+    private String[] legacyTypes;
+
+    private static class LegacyUse {
+        String stimType;
+        int tick;
+
+        LegacyUse(String stimType, int tick) {
+            this.stimType = stimType;
+            this.tick = tick;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SplittableRandom random = new SplittableRandom(42);
+        tick = 0;
+
+        doses = new StimDoses[players];
+        for (int i = 0; i < players; i++) {
+            doses[i] = new StimDoses();
+        }
+        queue = new DoseQueue();
+
+        legacyList = Collections.synchronizedList(new LinkedList<>());
+        legacyDelays = new HashMap<>();
+        legacyTypes = new String[STIM_TYPES];
+        for (int stimId = 0; stimId < STIM_TYPES; stimId++) {
+            legacyTypes[stimId] = "item.stims.stim_" + stimId;
+            legacyDelays.put(legacyTypes[stimId], DELAYS[stimId]);
+        }
+
+        // Spread mixed stim types over the players, with uses somewhere within their delay
+        for (int i = 0; i < pending; i++) {
+            int player = i % players;
+            int stimId = random.nextInt(STIM_TYPES);
+            int usedTick = -random.nextInt(DELAYS[stimId]);
+
+            StimDoses playerDoses = doses[player];
+            long dueTick = usedTick + DELAYS[stimId];
+            if (playerDoses.indexOf(stimId) >= 0 || playerDoses.size() < maxPendingDoses) {
+                playerDoses.put(stimId, dueTick, 1, StimDoses.NO_OUTCOME);
+                if (dueTick < playerDoses.wakeTick()) {
+                    playerDoses.setWakeTick(dueTick);
+                    queue.add(dueTick, player);
+                }
+            }
+
+            legacyList.add(new LegacyUse(legacyTypes[stimId], usedTick));
+        }
+    }
+
+    @Benchmark
+    public long heapTick() {
+        long currentTick = ++tick;
+        while (queue.peekDueTick() <= currentTick) {
+            int player = queue.peekEntityId();
+            queue.removeFirst();
+
+            StimDoses playerDoses = doses[player];
+            playerDoses.drainDue(currentTick, playerDoses, SchedulerBenchmark::redose);
+            playerDoses.setWakeTick(Long.MAX_VALUE);
+            if (!playerDoses.isEmpty()) {
+                playerDoses.setWakeTick(playerDoses.nextDueTick());
+                queue.add(playerDoses.nextDueTick(), player);
+            }
+        }
+        return applied;
+    }
+
+    @Benchmark
+    public long legacyListScanTick() {
+        int currentTick = (int) ++tick;
+
+        // Every registered stim item ran its own PlayerTickEvent handler
+        for (int item = 0; item < STIM_TYPES; item++) {
+            for (int player = 0; player < players; player++) {
+                List<LegacyUse> toRemove = new ArrayList<>();
+                synchronized (legacyList) {
+                    for (LegacyUse use : legacyList) {
+                        Integer delay = legacyDelays.get(use.stimType);
+                        if (delay == null) continue;
+                        if (currentTick - use.tick >= delay) {
+                            applied++;
+                            toRemove.add(use);
+                        }
+                    }
+                    legacyList.removeAll(toRemove);
+                }
+                // Keep the load constant, like heapTick does
+                for (LegacyUse use : toRemove) {
+                    use.tick = currentTick;
+                    legacyList.add(use);
+                }
+            }
+        }
+        return applied;
+    }
+
+    private static void redose(StimDoses playerDoses, int stimId, int stacks, int outcome, long dueTick) {
+        applied++;
+        playerDoses.put(stimId, dueTick + DELAYS[stimId], stacks, outcome);
+    }
+}
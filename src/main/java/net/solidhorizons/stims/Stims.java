@@ -2,20 +2,41 @@ package net.solidhorizons.stims;
 
 import com.mojang.logging.LogUtils;
 import net.minecraft.client.Minecraft;
+import net.minecraft.server.packs.resources.ResourceManagerReloadListener;
 import net.minecraft.world.item.CreativeModeTabs;
+import net.minecraft.world.level.block.DispenserBlock;
 import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.client.event.ClientPlayerNetworkEvent;
+import net.minecraftforge.client.event.RegisterClientReloadListenersEvent;
+import net.minecraftforge.client.event.RegisterGuiOverlaysEvent;
+import net.minecraftforge.client.gui.overlay.VanillaGuiOverlay;
 import net.minecraftforge.common.MinecraftForge;
 import net.minecraftforge.event.BuildCreativeModeTabContentsEvent;
 import net.minecraftforge.event.server.ServerStartingEvent;
 import net.minecraftforge.eventbus.api.IEventBus;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.ModLoadingContext;
 import net.minecraftforge.fml.common.Mod;
+import net.minecraftforge.fml.config.ModConfig;
 import net.minecraftforge.fml.event.lifecycle.FMLClientSetupEvent;
 import net.minecraftforge.fml.event.lifecycle.FMLCommonSetupEvent;
 import net.minecraftforge.fml.javafmlmod.FMLJavaModLoadingContext;
+import net.solidhorizons.stims.audit.StimAuditLog;
 import net.solidhorizons.stims.block.ModBlocks;
+import net.solidhorizons.stims.block.entity.ModBlockEntities;
+import net.solidhorizons.stims.client.ClientStimData;
+import net.solidhorizons.stims.client.StimHudOverlay;
+import net.solidhorizons.stims.command.StimsCommand;
+import net.solidhorizons.stims.config.StimsServerConfig;
 import net.solidhorizons.stims.item.ModCreativeModeTabs;
 import net.solidhorizons.stims.item.ModItems;
+import net.solidhorizons.stims.item.custom.StimDispenseItemBehavior;
+import net.solidhorizons.stims.item.custom.StimItem;
+import net.solidhorizons.stims.network.ModMessages;
+import net.solidhorizons.stims.stim.StimCapability;
+import net.solidhorizons.stims.stim.StimDefinitions;
+import net.solidhorizons.stims.stim.StimMetrics;
+import net.solidhorizons.stims.stim.StimScheduler;
 import org.slf4j.Logger;
 
 // The value here should match an entry in the META-INF/mods.toml file
@@ -35,10 +56,22 @@ public class Stims
 
         ModItems.register(modEventBus);
         ModBlocks.register(modEventBus);
+        ModBlockEntities.register(modEventBus);
+
+        ModLoadingContext.get().registerConfig(ModConfig.Type.SERVER, StimsServerConfig.SPEC);
 
         modEventBus.addListener(this::commonSetup);
+        modEventBus.addListener(StimCapability::onRegisterCapabilities);
+        modEventBus.addListener(StimsServerConfig::onLoading);
+        modEventBus.addListener(StimsServerConfig::onReloading);
 
         MinecraftForge.EVENT_BUS.register(this);
+        MinecraftForge.EVENT_BUS.register(StimScheduler.class);
+        MinecraftForge.EVENT_BUS.register(StimCapability.class);
+        MinecraftForge.EVENT_BUS.register(StimDefinitions.class);
+        MinecraftForge.EVENT_BUS.register(StimMetrics.class);
+        MinecraftForge.EVENT_BUS.register(StimsCommand.class);
+        MinecraftForge.EVENT_BUS.register(StimAuditLog.class);
 
         modEventBus.addListener(this::addCreative);
 
@@ -46,7 +79,16 @@ public class Stims
 
     private void commonSetup(final FMLCommonSetupEvent event)
     {
-
+        StimMetrics.init();
+        event.enqueueWork(ModMessages::register);
+        // The dispenser behavior map isn't thread safe
+        event.enqueueWork(() -> {
+            StimDispenseItemBehavior behavior = new StimDispenseItemBehavior();
+            for (int i = 0; i < StimItem.count(); i++)
+            {
+                DispenserBlock.registerBehavior(StimItem.byId(i), behavior);
+            }
+        });
     }
 
     // Add the example block item to the building blocks tab
@@ -73,5 +115,28 @@ public class Stims
             LOGGER.info("HELLO FROM CLIENT SETUP");
             LOGGER.info("MINECRAFT NAME >> {}", Minecraft.getInstance().getUser().getName());
         }
+
+        @SubscribeEvent
+        public static void onRegisterReloadListeners(RegisterClientReloadListenersEvent event)
+        {
+            // Stim tooltips are cached per item and have to be rebuilt when the language or resource packs change
+            event.registerReloadListener((ResourceManagerReloadListener) resourceManager -> StimItem.clearTooltipCache());
+        }
+
+        @SubscribeEvent
+        public static void onRegisterGuiOverlays(RegisterGuiOverlaysEvent event)
+        {
+            event.registerAbove(VanillaGuiOverlay.POTION_ICONS.id(), "stim_comedowns", StimHudOverlay.HUD);
+        }
+    }
+
+    @Mod.EventBusSubscriber(modid = MOD_ID, bus = Mod.EventBusSubscriber.Bus.FORGE, value = Dist.CLIENT)
+    public static class ClientForgeEvents
+    {
+        @SubscribeEvent
+        public static void onLoggingOut(ClientPlayerNetworkEvent.LoggingOut event)
+        {
+            ClientStimData.clear();
+        }
     }
 }
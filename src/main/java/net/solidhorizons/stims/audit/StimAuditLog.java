@@ -0,0 +1,218 @@
+package net.solidhorizons.stims.audit;
+
+import com.google.gson.stream.JsonWriter;
+import com.mojang.logging.LogUtils;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.entity.LivingEntity;
+import net.minecraftforge.event.server.ServerStartedEvent;
+import net.minecraftforge.event.server.ServerStoppingEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.registries.ForgeRegistries;
+import net.solidhorizons.stims.config.StimsServerSettings;
+import net.solidhorizons.stims.item.custom.StimItem;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Append-only record of every injection and after-effect, for moderation and balancing.
+// The tick path only captures a small record and offers it to a bounded lock-free queue. A single daemon
+// thread batches the records into stims/audit/audit.ndjson, one JSON object per line, and rotates the file
+// to a timestamped one once it gets too big. When the writer can't keep up, records are dropped and counted
+// instead of blocking the server.
+public class StimAuditLog {
+
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    private static final String DIRECTORY = "stims/audit";
+    private static final String FILE_NAME = "audit.ndjson";
+    private static final int BATCH_SIZE = 512;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final ConcurrentLinkedQueue<Entry> QUEUE = new ConcurrentLinkedQueue<>();
+    // ConcurrentLinkedQueue.size() walks the whole queue, so the bound is kept separately
+    private static final AtomicInteger SIZE = new AtomicInteger();
+    private static final LongAdder DROPPED = new LongAdder();
+
+    private static volatile boolean running;
+    private static Thread writer;
+
+    public enum Event {
+        USE, REJECTED, AFTER_EFFECT, OVERDOSE
+    }
+
+    // One line of the log. Only captured values, so it can be formatted on the writer thread.
+    private record Entry(long time, long gameTick, Event event, UUID uuid, String name, ResourceLocation type, int stimId,
+                         ResourceLocation dimension, double x, double y, double z, int outcome, int stacks, long rolls) {
+    }
+
+    // outcome is the index of the rolled outcome, rolls the size of the entity's StimRandom stream afterwards,
+    // so the roll can be reproduced. Safe from any thread.
+    public static void record(Event event, LivingEntity entity, int stimId, int outcome, int stacks, long rolls) {
+        if (!running) {
+            return;
+        }
+        if (SIZE.incrementAndGet() > StimsServerSettings.get().auditQueueCapacity()) {
+            SIZE.decrementAndGet();
+            DROPPED.increment();
+            return;
+        }
+        QUEUE.add(new Entry(System.currentTimeMillis(), entity.level().getGameTime(), event, entity.getUUID(),
+                entity.getScoreboardName(), ForgeRegistries.ENTITY_TYPES.getKey(entity.getType()), stimId,
+                entity.level().dimension().location(), entity.getX(), entity.getY(), entity.getZ(), outcome, stacks, rolls));
+    }
+
+    public static long dropped() {
+        return DROPPED.sum();
+    }
+
+    public static int queued() {
+        return SIZE.get();
+    }
+
+    @SubscribeEvent
+    public static void onServerStarted(ServerStartedEvent event) {
+        // Turning the log on or off and the file size apply from the next start, the queue capacity right away
+        StimsServerSettings settings = StimsServerSettings.get();
+        if (!settings.auditLog()) {
+            return;
+        }
+        if (writer != null) {
+            if (writer.isAlive()) {
+                // Two writers must never append to the same file
+                LOGGER.warn("The stim audit writer of the last server is still flushing, not logging until the next start");
+                return;
+            }
+            // It finished after onServerStopping gave up waiting on it
+            writer = null;
+            QUEUE.clear();
+            SIZE.set(0);
+        }
+        MinecraftServer server = event.getServer();
+        Path directory = server.getFile(DIRECTORY).toPath();
+        long maxFileBytes = settings.auditMaxFileBytes();
+
+        running = true;
+        writer = new Thread(() -> writeLoop(directory, maxFileBytes), "Stims audit writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @SubscribeEvent
+    public static void onServerStopping(ServerStoppingEvent event) {
+        if (writer == null) {
+            return;
+        }
+        // The writer drains what is left before it exits
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            // Still writing, keep it so the next start doesn't open a second writer on the file
+            LOGGER.warn("The stim audit writer didn't finish within 5 seconds, {} records are still queued", SIZE.get());
+            return;
+        }
+        writer = null;
+        QUEUE.clear();
+        SIZE.set(0);
+    }
+
+    private static void writeLoop(Path directory, long maxFileBytes) {
+        Path file = directory.resolve(FILE_NAME);
+        FileChannel channel = null;
+        StringBuilder batch = new StringBuilder();
+        try {
+            Files.createDirectories(directory);
+            channel = open(file);
+
+            while (true) {
+                // Read the flag before draining, so records offered before shutdown are still written
+                boolean stopping = !running;
+                int count = 0;
+                Entry entry;
+                while (count < BATCH_SIZE && (entry = QUEUE.poll()) != null) {
+                    SIZE.decrementAndGet();
+                    appendLine(batch, entry);
+                    count++;
+                }
+
+                if (count > 0) {
+                    if (channel.size() >= maxFileBytes) {
+                        channel.close();
+                        Files.move(file, directory.resolve("audit-" + System.currentTimeMillis() + ".ndjson"));
+                        channel = open(file);
+                    }
+                    ByteBuffer buffer = StandardCharsets.UTF_8.encode(batch.toString());
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    batch.setLength(0);
+                } else if (stopping) {
+                    break;
+                } else {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Stim audit log failed, no more records will be written to {}", file, e);
+        } finally {
+            // However the loop ended, stop taking records nobody will write
+            running = false;
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    LOGGER.error("Couldn't close stim audit log {}", file, e);
+                }
+            }
+        }
+    }
+
+    private static FileChannel open(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private static void appendLine(StringBuilder batch, Entry entry) throws IOException {
+        StringWriter line = new StringWriter();
+        JsonWriter json = new JsonWriter(line);
+        json.beginObject();
+        json.name("time").value(Instant.ofEpochMilli(entry.time()).toString());
+        json.name("tick").value(entry.gameTick());
+        json.name("event").value(entry.event().name().toLowerCase(Locale.ROOT));
+        json.name("uuid").value(entry.uuid().toString());
+        json.name("name").value(entry.name());
+        json.name("type").value(String.valueOf(entry.type()));
+        json.name("stim").value(ForgeRegistries.ITEMS.getKey(StimItem.byId(entry.stimId())).toString());
+        json.name("dimension").value(entry.dimension().toString());
+        json.name("x").value(Math.round(entry.x() * 100) / 100.0);
+        json.name("y").value(Math.round(entry.y() * 100) / 100.0);
+        json.name("z").value(Math.round(entry.z() * 100) / 100.0);
+        if (entry.outcome() >= 0) {
+            json.name("outcome").value(entry.outcome());
+        }
+        json.name("stacks").value(entry.stacks());
+        json.name("rolls").value(entry.rolls());
+        json.endObject();
+        json.close();
+        batch.append(line).append('\n');
+    }
+}
@@ -10,6 +10,7 @@ import net.minecraftforge.registries.DeferredRegister;
 import net.minecraftforge.registries.ForgeRegistries;
 import net.minecraftforge.registries.RegistryObject;
 import net.solidhorizons.stims.Stims;
+import net.solidhorizons.stims.block.custom.MedicStationBlock;
 import net.solidhorizons.stims.item.ModItems;
 
 import java.util.function.Supplier;
@@ -20,6 +21,10 @@ public class ModBlocks {
             DeferredRegister.create(ForgeRegistries.BLOCKS, Stims.MOD_ID);
 
 
+    public static final RegistryObject<Block> MEDIC_STATION = registerBlock("medic_station",
+            () -> new MedicStationBlock(BlockBehaviour.Properties.copy(Blocks.IRON_BLOCK)));
+
+
     private static <T extends Block> RegistryObject<T> registerBlock(String name, Supplier<T> block) {
         RegistryObject<T> toReturn = BLOCKS.register(name, block);
         registerBlockItem(name, toReturn);
@@ -0,0 +1,76 @@
+package net.solidhorizons.stims.block.custom;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.network.chat.Component;
+import net.minecraft.world.InteractionHand;
+import net.minecraft.world.InteractionResult;
+import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.BaseEntityBlock;
+import net.minecraft.world.level.block.RenderShape;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraft.world.level.block.entity.BlockEntityTicker;
+import net.minecraft.world.level.block.entity.BlockEntityType;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.phys.BlockHitResult;
+import net.solidhorizons.stims.block.entity.MedicStationBlockEntity;
+import net.solidhorizons.stims.block.entity.ModBlockEntities;
+import net.solidhorizons.stims.item.custom.StimItem;
+import org.jetbrains.annotations.Nullable;
+
+// Injects its stims into every player who comes close, e.g. at spawn or around an arena.
+// Operators and creative players right-click with a stim to add it to the station, and sneak and right-click
+// with an empty hand to clear it. Everyone else only gets to see which stims the station hands out.
+public class MedicStationBlock extends BaseEntityBlock {
+
+    public MedicStationBlock(Properties properties) {
+        super(properties);
+    }
+
+    @Override
+    public RenderShape getRenderShape(BlockState pState) {
+        return RenderShape.MODEL;
+    }
+
+    @Nullable
+    @Override
+    public BlockEntity newBlockEntity(BlockPos pPos, BlockState pState) {
+        return new MedicStationBlockEntity(pPos, pState);
+    }
+
+    @Override
+    public InteractionResult use(BlockState pState, Level pLevel, BlockPos pPos, Player pPlayer, InteractionHand pHand, BlockHitResult pHit) {
+        if (pLevel.isClientSide) {
+            return InteractionResult.SUCCESS;
+        }
+        if (!(pLevel.getBlockEntity(pPos) instanceof MedicStationBlockEntity station)) {
+            return InteractionResult.PASS;
+        }
+
+        ItemStack stack = pPlayer.getItemInHand(pHand);
+        // Loading a station is free and reaches every passer-by, so it is limited to the people running the server
+        boolean canEdit = pPlayer.hasPermissions(2) || pPlayer.isCreative();
+        if (canEdit && stack.getItem() instanceof StimItem stim) {
+            if (station.addStim(stim)) {
+                pPlayer.displayClientMessage(Component.translatable("message.stims.medic_station.added", stim.getDescription()), true);
+            } else {
+                pPlayer.displayClientMessage(Component.translatable("message.stims.medic_station.full"), true);
+            }
+        } else if (canEdit && stack.isEmpty() && pPlayer.isShiftKeyDown()) {
+            station.clearStims();
+            pPlayer.displayClientMessage(Component.translatable("message.stims.medic_station.cleared"), true);
+        } else {
+            pPlayer.displayClientMessage(Component.translatable("message.stims.medic_station.stims", station.describeStims()), true);
+        }
+        return InteractionResult.CONSUME;
+    }
+
+    @Nullable
+    @Override
+    public <T extends BlockEntity> BlockEntityTicker<T> getTicker(Level pLevel, BlockState pState, BlockEntityType<T> pBlockEntityType) {
+        // Only the server injects
+        return pLevel.isClientSide ? null
+                : createTickerHelper(pBlockEntityType, ModBlockEntities.MEDIC_STATION.get(), MedicStationBlockEntity::serverTick);
+    }
+}
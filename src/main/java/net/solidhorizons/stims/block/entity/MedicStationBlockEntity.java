@@ -0,0 +1,150 @@
+package net.solidhorizons.stims.block.entity;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.nbt.StringTag;
+import net.minecraft.nbt.Tag;
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.chat.ComponentUtils;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.util.Mth;
+import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.phys.AABB;
+import net.minecraftforge.registries.ForgeRegistries;
+import net.solidhorizons.stims.config.StimsServerSettings;
+import net.solidhorizons.stims.item.custom.StimItem;
+import net.solidhorizons.stims.stim.StimCapability;
+import net.solidhorizons.stims.stim.StimDoses;
+import net.solidhorizons.stims.stim.StimDosing;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Holds the stims a medic station hands out and does the periodic scan for players in range.
+// Stations only scan once per interval, each on a tick picked from its position so a spawn full of stations
+// doesn't scan all at once. A scan is a pass over the players of the level against a cached box, so it
+// costs nothing while the level is empty, and players are injected through StimDosing like with the item.
+public class MedicStationBlockEntity extends BlockEntity {
+
+    public static final int MAX_STIMS = 4;
+
+    private static final String STIMS_KEY = "Stims";
+
+    private final int[] stimIds = new int[MAX_STIMS];
+    private int stimCount;
+
+    private final long scanPhase;
+    // Scan box for scanRadius, rebuilt when the configured radius changes
+    private AABB scanArea;
+    private int scanRadius = -1;
+
+    public MedicStationBlockEntity(BlockPos pPos, BlockState pBlockState) {
+        super(ModBlockEntities.MEDIC_STATION.get(), pPos, pBlockState);
+        this.scanPhase = Mth.getSeed(pPos);
+    }
+
+    public static void serverTick(Level level, BlockPos pos, BlockState state, MedicStationBlockEntity station) {
+        if (station.stimCount == 0) {
+            return;
+        }
+        if (Math.floorMod(level.getGameTime() + station.scanPhase, StimsServerSettings.get().medicStationInterval()) != 0) {
+            return;
+        }
+        List<? extends Player> players = level.players();
+        if (players.isEmpty()) {
+            return;
+        }
+
+        AABB area = station.scanArea(pos);
+        for (int i = 0; i < players.size(); i++) {
+            if (players.get(i) instanceof ServerPlayer player && player.isAlive() && !player.isSpectator()
+                    && area.intersects(player.getBoundingBox())) {
+                station.treat(player);
+            }
+        }
+    }
+
+    // A player who still has a dose of a stim pending isn't given another one, so standing next to a
+    // station doesn't keep pushing back their after-effects. Station doses are involuntary, so a player idling
+    // next to one is skipped rather than pushed over the overdose threshold. Stims the player can't be given are
+    // skipped quietly, the station asks again on every scan and would otherwise flood the audit log and the stats.
+    private void treat(ServerPlayer player) {
+        StimDoses doses = StimCapability.get(player);
+        for (int i = 0; i < stimCount; i++) {
+            if ((doses == null || doses.indexOf(stimIds[i]) < 0) && StimDosing.canDose(player, stimIds[i], false)) {
+                StimDosing.dose(player, stimIds[i], false);
+            }
+        }
+    }
+
+    private AABB scanArea(BlockPos pos) {
+        int radius = StimsServerSettings.get().medicStationRadius();
+        if (radius != scanRadius) {
+            scanArea = new AABB(pos).inflate(radius);
+            scanRadius = radius;
+        }
+        return scanArea;
+    }
+
+    // Returns false if the station is full
+    public boolean addStim(StimItem stim) {
+        for (int i = 0; i < stimCount; i++) {
+            if (stimIds[i] == stim.getStimId()) {
+                return true;
+            }
+        }
+        if (stimCount == MAX_STIMS) {
+            return false;
+        }
+        stimIds[stimCount++] = stim.getStimId();
+        setChanged();
+        return true;
+    }
+
+    public void clearStims() {
+        stimCount = 0;
+        setChanged();
+    }
+
+    public Component describeStims() {
+        if (stimCount == 0) {
+            return Component.translatable("message.stims.medic_station.empty");
+        }
+        List<StimItem> stims = new ArrayList<>();
+        for (int i = 0; i < stimCount; i++) {
+            stims.add(StimItem.byId(stimIds[i]));
+        }
+        return ComponentUtils.formatList(stims, Item::getDescription);
+    }
+
+    @Override
+    protected void saveAdditional(CompoundTag pTag) {
+        super.saveAdditional(pTag);
+        ListTag stims = new ListTag();
+        for (int i = 0; i < stimCount; i++) {
+            stims.add(StringTag.valueOf(ForgeRegistries.ITEMS.getKey(StimItem.byId(stimIds[i])).toString()));
+        }
+        pTag.put(STIMS_KEY, stims);
+    }
+
+    @Override
+    public void load(CompoundTag pTag) {
+        super.load(pTag);
+        ListTag stims = pTag.getList(STIMS_KEY, Tag.TAG_STRING);
+        stimCount = 0;
+        for (int i = 0; i < stims.size() && stimCount < MAX_STIMS; i++) {
+            ResourceLocation itemId = ResourceLocation.tryParse(stims.getString(i));
+            Item item = itemId == null ? null : ForgeRegistries.ITEMS.getValue(itemId);
+            // Stims that no longer exist are dropped
+            if (item instanceof StimItem stim) {
+                stimIds[stimCount++] = stim.getStimId();
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package net.solidhorizons.stims.block.entity;
+
+import net.minecraft.world.level.block.entity.BlockEntityType;
+import net.minecraftforge.eventbus.api.IEventBus;
+import net.minecraftforge.registries.DeferredRegister;
+import net.minecraftforge.registries.ForgeRegistries;
+import net.minecraftforge.registries.RegistryObject;
+import net.solidhorizons.stims.Stims;
+import net.solidhorizons.stims.block.ModBlocks;
+
+public class ModBlockEntities {
+
+    public static final DeferredRegister<BlockEntityType<?>> BLOCK_ENTITIES =
+            DeferredRegister.create(ForgeRegistries.BLOCK_ENTITY_TYPES, Stims.MOD_ID);
+
+
+    public static final RegistryObject<BlockEntityType<MedicStationBlockEntity>> MEDIC_STATION =
+            BLOCK_ENTITIES.register("medic_station", () ->
+                    BlockEntityType.Builder.of(MedicStationBlockEntity::new, ModBlocks.MEDIC_STATION.get()).build(null));
+
+
+    public static void register(IEventBus eventBus) {
+        BLOCK_ENTITIES.register(eventBus);
+    }
+}
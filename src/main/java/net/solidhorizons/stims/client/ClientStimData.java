@@ -0,0 +1,208 @@
+package net.solidhorizons.stims.client;
+
+import net.solidhorizons.stims.network.ModMessages;
+import net.solidhorizons.stims.network.StimResyncC2SPacket;
+import net.solidhorizons.stims.network.StimRulesS2CPacket;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// The local player's pending stim doses as last synced by the server, plus the injections the client predicted
+// and the server hasn't confirmed yet. Predictions use the stim rules the server syncs on login and reload,
+// they are confirmed or rolled back by StimUseResultS2CPacket and replaced by the next dose sync.
+// Only used on the client main thread.
+public class ClientStimData {
+
+    // A use the server never answers, e.g. because it was dropped while changing dimension, is given up after this
+    // and the client asks for its inventory and doses again
+    private static final long PREDICTION_TIMEOUT_MILLIS = 5000;
+
+    private static int[] stimIds = new int[0];
+    private static int[] dueIn = new int[0];
+    private static long receivedAt;
+
+    private static StimRulesS2CPacket.Rule[] rules = new StimRulesS2CPacket.Rule[0];
+    private static int maxPendingDoses;
+
+    private static final List<Prediction> predictions = new ArrayList<>();
+
+    // An injection of a stim with an after-effect, counted down from the moment it was predicted
+    private static class Prediction {
+        final int stimId;
+        final int dueIn;
+        final long madeAt;
+        // The server accepted it but the dose sync hasn't arrived yet
+        boolean confirmed;
+
+        Prediction(int stimId, int dueIn, long madeAt) {
+            this.stimId = stimId;
+            this.dueIn = dueIn;
+            this.madeAt = madeAt;
+        }
+
+        int ticksUntilDue(long now) {
+            return (int) Math.max(0, dueIn - (now - madeAt) / 50);
+        }
+    }
+
+    @FunctionalInterface
+    public interface DoseConsumer {
+        void accept(int stimId, int ticksUntilDue, boolean predicted);
+    }
+
+    public static void set(int[] stimIds, int[] dueIn) {
+        ClientStimData.stimIds = stimIds;
+        ClientStimData.dueIn = dueIn;
+        ClientStimData.receivedAt = System.currentTimeMillis();
+        // The sync already contains the doses the server accepted
+        predictions.removeIf(prediction -> prediction.confirmed);
+    }
+
+    public static void setRules(StimRulesS2CPacket.Rule[] rules, int maxPendingDoses) {
+        ClientStimData.rules = rules;
+        ClientStimData.maxPendingDoses = maxPendingDoses;
+    }
+
+    // Called when leaving a server, the next one syncs its own rules and doses
+    public static void clear() {
+        stimIds = new int[0];
+        dueIn = new int[0];
+        rules = new StimRulesS2CPacket.Rule[0];
+        predictions.clear();
+    }
+
+    public static int size() {
+        return stimIds.length;
+    }
+
+    public static int stimId(int index) {
+        return stimIds[index];
+    }
+
+    // Ticks until the after-effect of the dose at the given index, counted down since the last sync
+    public static int ticksUntilDue(int index) {
+        long elapsedTicks = (System.currentTimeMillis() - receivedAt) / 50;
+        return (int) Math.max(0, dueIn[index] - elapsedTicks);
+    }
+
+    // Predict whether the server will accept an injection of the stim, following the same stacking rules and
+    // pending dose limit as StimDosing. A predicted injection shows up as a pending dose right away.
+    // Returns false when the server is expected to refuse it or the stim isn't known yet.
+    public static boolean predictUse(int stimId) {
+        StimRulesS2CPacket.Rule rule = stimId < rules.length ? rules[stimId] : null;
+        if (rule == null) {
+            return false;
+        }
+        if (!rule.afterEffect()) {
+            // Nothing to count down, and stims without after-effect are never refused
+            return true;
+        }
+
+        long now = System.currentTimeMillis();
+        expirePredictions(now);
+        int remaining = remainingTicks(stimId, now);
+        int dueTicks = rule.delayTicks();
+        if (remaining >= 0) {
+            switch (rule.stacking()) {
+                case REJECT -> {
+                    return false;
+                }
+                case EXTEND -> dueTicks = Math.min(remaining + rule.delayTicks(), rule.maxStacks() * rule.delayTicks());
+                case REFRESH, ESCALATE -> {
+                }
+            }
+        } else if (pendingCount() >= maxPendingDoses) {
+            return false;
+        }
+
+        predictions.add(new Prediction(stimId, dueTicks, now));
+        return true;
+    }
+
+    // Match the server's answer with the oldest open prediction of the stim. A rejected prediction is dropped,
+    // the server resends the inventory to give the injector back.
+    public static void confirm(int stimId, boolean accepted) {
+        for (int i = 0; i < predictions.size(); i++) {
+            Prediction prediction = predictions.get(i);
+            if (prediction.stimId == stimId && !prediction.confirmed) {
+                if (accepted) {
+                    prediction.confirmed = true;
+                } else {
+                    predictions.remove(i);
+                }
+                return;
+            }
+        }
+    }
+
+    // Every pending dose, predicted ones taking the place of the synced dose of the same stim
+    public static void forEachDose(DoseConsumer consumer) {
+        long now = System.currentTimeMillis();
+        expirePredictions(now);
+        for (int i = 0; i < stimIds.length; i++) {
+            if (latestPrediction(stimIds[i]) == null) {
+                consumer.accept(stimIds[i], ticksUntilDue(i), false);
+            }
+        }
+        for (int i = 0; i < predictions.size(); i++) {
+            Prediction prediction = predictions.get(i);
+            if (latestPrediction(prediction.stimId) == prediction) {
+                consumer.accept(prediction.stimId, prediction.ticksUntilDue(now), !prediction.confirmed);
+            }
+        }
+    }
+
+    public static boolean isEmpty() {
+        return stimIds.length == 0 && predictions.isEmpty();
+    }
+
+    private static void expirePredictions(long now) {
+        if (predictions.removeIf(prediction -> now - prediction.madeAt > PREDICTION_TIMEOUT_MILLIS)) {
+            // The injector the client consumed and the dose it predicted may both be wrong
+            ModMessages.sendToServer(new StimResyncC2SPacket());
+        }
+    }
+
+    // Ticks left on the pending dose of the stim, or -1 if there is none
+    private static int remainingTicks(int stimId, long now) {
+        Prediction prediction = latestPrediction(stimId);
+        if (prediction != null) {
+            return prediction.ticksUntilDue(now);
+        }
+        for (int i = 0; i < stimIds.length; i++) {
+            if (stimIds[i] == stimId) {
+                return ticksUntilDue(i);
+            }
+        }
+        return -1;
+    }
+
+    private static int pendingCount() {
+        int count = stimIds.length;
+        for (int i = 0; i < predictions.size(); i++) {
+            Prediction prediction = predictions.get(i);
+            if (latestPrediction(prediction.stimId) == prediction && !isSynced(prediction.stimId)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static Prediction latestPrediction(int stimId) {
+        for (int i = predictions.size() - 1; i >= 0; i--) {
+            if (predictions.get(i).stimId == stimId) {
+                return predictions.get(i);
+            }
+        }
+        return null;
+    }
+
+    private static boolean isSynced(int stimId) {
+        for (int id : stimIds) {
+            if (id == stimId) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,61 @@
+package net.solidhorizons.stims.client;
+
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.gui.Font;
+import net.minecraft.client.gui.GuiGraphics;
+import net.minecraft.network.chat.Component;
+import net.minecraft.util.StringUtil;
+import net.minecraft.world.item.ItemStack;
+import net.minecraftforge.client.gui.overlay.ForgeGui;
+import net.minecraftforge.client.gui.overlay.IGuiOverlay;
+import net.solidhorizons.stims.item.custom.StimItem;
+
+// Lists the local player's pending comedowns on the left of the screen, each with its injector and the time
+// left until the after-effect. Injections the server hasn't confirmed yet are greyed out.
+public class StimHudOverlay implements IGuiOverlay, ClientStimData.DoseConsumer {
+
+    public static final StimHudOverlay HUD = new StimHudOverlay();
+
+    private static final int LINE_HEIGHT = 18;
+    private static final int CONFIRMED_COLOR = 0xFFFFFF;
+    private static final int PREDICTED_COLOR = 0xA0A0A0;
+
+    // Only used to render the icons, created once per stim
+    private ItemStack[] icons = new ItemStack[0];
+
+    // State of the frame being rendered
+    private GuiGraphics graphics;
+    private Font font;
+    private int y;
+
+    @Override
+    public void render(ForgeGui gui, GuiGraphics guiGraphics, float partialTick, int screenWidth, int screenHeight) {
+        if (ClientStimData.isEmpty() || Minecraft.getInstance().options.hideGui) {
+            return;
+        }
+
+        graphics = guiGraphics;
+        font = gui.getFont();
+        y = screenHeight / 3;
+        ClientStimData.forEachDose(this);
+        graphics = null;
+    }
+
+    @Override
+    public void accept(int stimId, int ticksUntilDue, boolean predicted) {
+        graphics.renderItem(icon(stimId), 4, y);
+        Component text = StimItem.byId(stimId).getDescription().copy().append(" " + StringUtil.formatTickDuration(ticksUntilDue));
+        graphics.drawString(font, text, 24, y + 4, predicted ? PREDICTED_COLOR : CONFIRMED_COLOR);
+        y += LINE_HEIGHT;
+    }
+
+    private ItemStack icon(int stimId) {
+        if (icons.length != StimItem.count()) {
+            icons = new ItemStack[StimItem.count()];
+        }
+        if (icons[stimId] == null) {
+            icons[stimId] = new ItemStack(StimItem.byId(stimId));
+        }
+        return icons[stimId];
+    }
+}
@@ -0,0 +1,145 @@
+package net.solidhorizons.stims.command;
+
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.context.CommandContext;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import com.mojang.brigadier.exceptions.DynamicCommandExceptionType;
+import com.mojang.brigadier.suggestion.SuggestionProvider;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.commands.SharedSuggestionProvider;
+import net.minecraft.commands.arguments.EntityArgument;
+import net.minecraft.commands.arguments.ResourceLocationArgument;
+import net.minecraft.network.chat.Component;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.entity.LivingEntity;
+import net.minecraftforge.event.RegisterCommandsEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.registries.ForgeRegistries;
+import net.solidhorizons.stims.audit.StimAuditLog;
+import net.solidhorizons.stims.item.custom.StimItem;
+import net.solidhorizons.stims.stim.StimDefinitions;
+import net.solidhorizons.stims.stim.StimDosing;
+import net.solidhorizons.stims.stim.StimMetrics;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.stream.IntStream;
+
+// Operator command to inspect the stim pipeline:
+//   /stims stats               print counters, queue depth, tick time, scheduler backlog and lateness
+//   /stims stats reset         reset all counters
+//   /stims stats csv <seconds> append the stats to stims/metrics.csv on a timer
+//   /stims stats csv stop      stop appending
+//   /stims dose <targets> <stim> inject living entities, e.g. to test stims on mobs
+public class StimsCommand {
+
+    private static final String CSV_FILE = "stims/metrics.csv";
+
+    private static final DynamicCommandExceptionType UNKNOWN_STIM = new DynamicCommandExceptionType(
+            id -> Component.literal("Unknown stim " + id));
+    private static final SuggestionProvider<CommandSourceStack> STIMS = (context, builder) ->
+            SharedSuggestionProvider.suggestResource(IntStream.range(0, StimItem.count())
+                    .mapToObj(i -> ForgeRegistries.ITEMS.getKey(StimItem.byId(i))), builder);
+
+    @SubscribeEvent
+    public static void onRegisterCommands(RegisterCommandsEvent event) {
+        register(event.getDispatcher());
+    }
+
+    public static void register(CommandDispatcher<CommandSourceStack> dispatcher) {
+        dispatcher.register(Commands.literal("stims")
+                .requires(source -> source.hasPermission(2))
+                .then(Commands.literal("stats")
+                        .executes(StimsCommand::printStats)
+                        .then(Commands.literal("reset")
+                                .executes(StimsCommand::resetStats))
+                        .then(Commands.literal("csv")
+                                .then(Commands.literal("stop")
+                                        .executes(context -> dumpCsv(context, 0)))
+                                .then(Commands.argument("seconds", IntegerArgumentType.integer(1))
+                                        .executes(context -> dumpCsv(context, IntegerArgumentType.getInteger(context, "seconds"))))))
+                .then(Commands.literal("dose")
+                        .then(Commands.argument("targets", EntityArgument.entities())
+                                .then(Commands.argument("stim", ResourceLocationArgument.id())
+                                        .suggests(STIMS)
+                                        .executes(context -> dose(context, EntityArgument.getEntities(context, "targets"),
+                                                ResourceLocationArgument.getId(context, "stim")))))));
+    }
+
+    private static int dose(CommandContext<CommandSourceStack> context, Collection<? extends Entity> targets, ResourceLocation id) throws CommandSyntaxException {
+        // Check the stim once up front so that an unknown one fails before any target is dosed
+        if (!(ForgeRegistries.ITEMS.getValue(id) instanceof StimItem item) || StimDefinitions.get(item.getStimId()) == null) {
+            throw UNKNOWN_STIM.create(id);
+        }
+
+        int dosed = 0;
+        int rejected = 0;
+        for (Entity target : targets) {
+            if (target instanceof LivingEntity entity) {
+                switch (StimDosing.dose(entity, item.getStimId())) {
+                    case DOSED -> dosed++;
+                    case REJECTED, UNDEFINED -> rejected++;
+                }
+            }
+        }
+
+        int count = dosed;
+        int refused = rejected;
+        context.getSource().sendSuccess(() -> Component.literal(String.format("Dosed %d entities with %s, %d rejected", count, id, refused)), true);
+        return dosed;
+    }
+
+    private static int printStats(CommandContext<CommandSourceStack> context) {
+        CommandSourceStack source = context.getSource();
+
+        source.sendSuccess(() -> Component.literal(String.format("Stims: %d wake-ups queued, tick avg %.3f ms, last %.3f ms, max %.3f ms over %d ticks",
+                StimMetrics.queueDepth(), millis(StimMetrics.averageTickNanos()), millis(StimMetrics.lastTickNanos()),
+                millis(StimMetrics.maxTickNanos()), StimMetrics.ticks())), false);
+        source.sendSuccess(() -> Component.literal(String.format("  over budget on %d ticks, at most %d ticks behind",
+                StimMetrics.deferredTicks(), StimMetrics.maxBacklogTicks())), false);
+        source.sendSuccess(() -> Component.literal(String.format("  audit log: %d queued, %d dropped",
+                StimAuditLog.queued(), StimAuditLog.dropped())), false);
+
+        for (int i = 0; i < StimItem.count(); i++) {
+            String name = ForgeRegistries.ITEMS.getKey(StimItem.byId(i)).toString();
+            long uses = StimMetrics.uses(i);
+            long rejected = StimMetrics.rejected(i);
+            long afterEffects = StimMetrics.afterEffects(i);
+            source.sendSuccess(() -> Component.literal(String.format("  %s: %d uses, %d rejected, %d after-effects", name, uses, rejected, afterEffects)), false);
+        }
+
+        StringBuilder lateness = new StringBuilder("  lateness (ticks):");
+        for (int i = 0; i < StimMetrics.LATENESS_BUCKETS; i++) {
+            long count = StimMetrics.lateness(i);
+            if (count > 0) {
+                lateness.append(' ').append(StimMetrics.latenessBucketStart(i)).append("+=").append(count);
+            }
+        }
+        source.sendSuccess(() -> Component.literal(lateness.toString()), false);
+        return 1;
+    }
+
+    private static int resetStats(CommandContext<CommandSourceStack> context) {
+        StimMetrics.reset();
+        context.getSource().sendSuccess(() -> Component.literal("Stim stats reset"), true);
+        return 1;
+    }
+
+    private static int dumpCsv(CommandContext<CommandSourceStack> context, int seconds) {
+        Path file = context.getSource().getServer().getFile(CSV_FILE).toPath();
+        StimMetrics.dumpCsv(file, seconds * 20);
+        if (seconds > 0) {
+            context.getSource().sendSuccess(() -> Component.literal("Writing stim stats to " + CSV_FILE + " every " + seconds + "s"), true);
+        } else {
+            context.getSource().sendSuccess(() -> Component.literal("Stopped writing stim stats"), true);
+        }
+        return 1;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
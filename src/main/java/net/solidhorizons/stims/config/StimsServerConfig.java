@@ -0,0 +1,152 @@
+package net.solidhorizons.stims.config;
+
+import net.minecraft.ResourceLocationException;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.MinecraftServer;
+import net.minecraftforge.common.ForgeConfigSpec;
+import net.minecraftforge.fml.event.config.ModConfigEvent;
+import net.minecraftforge.server.ServerLifecycleHooks;
+import net.solidhorizons.stims.stim.StimDefinitions;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Server side settings, stored per world in serverconfig/stims-server.toml. Edits to the file are picked up
+// while the server runs. Code reads the settings through StimsServerSettings, not through these values.
+public class StimsServerConfig {
+    private static final ForgeConfigSpec.Builder BUILDER = new ForgeConfigSpec.Builder();
+
+    public static final ForgeConfigSpec.IntValue MAX_PENDING_DOSES;
+    public static final ForgeConfigSpec.IntValue MAX_AFTER_EFFECTS_PER_TICK;
+    public static final ForgeConfigSpec.IntValue TICK_BUDGET_MICROS;
+    public static final ForgeConfigSpec.IntValue MEDIC_STATION_RADIUS;
+    public static final ForgeConfigSpec.IntValue MEDIC_STATION_INTERVAL;
+    public static final ForgeConfigSpec.BooleanValue AUDIT_LOG;
+    public static final ForgeConfigSpec.IntValue AUDIT_QUEUE_CAPACITY;
+    public static final ForgeConfigSpec.IntValue AUDIT_MAX_FILE_MEGABYTES;
+    public static final ForgeConfigSpec.DoubleValue DURATION_MULTIPLIER;
+    public static final ForgeConfigSpec.DoubleValue DELAY_MULTIPLIER;
+    public static final ForgeConfigSpec.ConfigValue<List<? extends String>> STIM_OVERRIDES;
+
+    public static final ForgeConfigSpec SPEC;
+
+    static {
+        BUILDER.push("doses");
+
+        MAX_PENDING_DOSES = BUILDER
+                .comment("Most stims a single player can have pending after-effects of at once.",
+                        "Injecting another stim while at the limit fails and the injector is not used up.")
+                .defineInRange("maxPendingDoses", 16, 1, 1024);
+
+        BUILDER.pop();
+        BUILDER.push("balance");
+
+        DURATION_MULTIPLIER = BUILDER
+                .comment("Factor for the duration of every stim effect, on top of the stim definitions.")
+                .defineInRange("durationMultiplier", 1.0, 0.01, 100.0);
+        DELAY_MULTIPLIER = BUILDER
+                .comment("Factor for the delay before every after-effect, on top of the stim definitions.")
+                .defineInRange("delayMultiplier", 1.0, 0.01, 100.0);
+        STIM_OVERRIDES = BUILDER
+                .comment("Factors for single stims, multiplied with the global ones.",
+                        "One entry per stim: \"<stim item> [duration=<factor>] [delay=<factor>]\",",
+                        "e.g. \"stims:morphine_injector duration=0.5 delay=2\"")
+                .defineListAllowEmpty(List.of("overrides"), List::of,
+                        entry -> entry instanceof String line && StimOverride.parse(line) != null);
+
+        BUILDER.pop();
+        BUILDER.push("scheduler");
+
+        MAX_AFTER_EFFECTS_PER_TICK = BUILDER
+                .comment("Most after-effects applied in one tick of a level, 0 for no limit.",
+                        "After-effects over the limit are applied on the following ticks, earliest due first.")
+                .defineInRange("maxAfterEffectsPerTick", 512, 0, Integer.MAX_VALUE);
+        TICK_BUDGET_MICROS = BUILDER
+                .comment("Most time in microseconds spent applying after-effects in one tick of a level, 0 for no limit.")
+                .defineInRange("tickBudgetMicros", 2000, 0, 1_000_000);
+
+        BUILDER.pop();
+        BUILDER.push("medic_station");
+
+        MEDIC_STATION_RADIUS = BUILDER
+                .comment("Distance in blocks around a medic station in which players get its stims.")
+                .defineInRange("radius", 4, 1, 32);
+        MEDIC_STATION_INTERVAL = BUILDER
+                .comment("Ticks between two scans of a medic station for players in range.")
+                .defineInRange("scanIntervalTicks", 20, 1, 1200);
+
+        BUILDER.pop();
+        BUILDER.push("audit");
+
+        AUDIT_LOG = BUILDER
+                .comment("Write every injection and after-effect to stims/audit/audit.ndjson, one JSON object per line.")
+                .define("enabled", true);
+        AUDIT_QUEUE_CAPACITY = BUILDER
+                .comment("Most records waiting to be written. When the writer falls behind, new records are dropped and counted.")
+                .defineInRange("queueCapacity", 8192, 16, 1_048_576);
+        AUDIT_MAX_FILE_MEGABYTES = BUILDER
+                .comment("Size at which the audit log is rotated to a timestamped file.")
+                .defineInRange("maxFileMegabytes", 16, 1, 4096);
+
+        BUILDER.pop();
+        SPEC = BUILDER.build();
+    }
+
+    // Mod event bus, fired when the server starts
+    public static void onLoading(ModConfigEvent.Loading event) {
+        if (event.getConfig().getSpec() == SPEC) {
+            StimsServerSettings.reload();
+        }
+    }
+
+    // Mod event bus, fired on Forge's config watcher thread after the file was edited
+    public static void onReloading(ModConfigEvent.Reloading event) {
+        if (event.getConfig().getSpec() != SPEC) {
+            return;
+        }
+        StimsServerSettings.reload();
+        // Clients predict injections with the delays and the pending dose limit
+        MinecraftServer server = ServerLifecycleHooks.getCurrentServer();
+        if (server != null) {
+            server.execute(() -> StimDefinitions.syncRules(server.getPlayerList().getPlayers()));
+        }
+    }
+
+    // One entry of the stim overrides list: "<stim item> [duration=<factor>] [delay=<factor>]"
+    record StimOverride(ResourceLocation item, float duration, float delay) {
+
+        @Nullable
+        static StimOverride parse(String line) {
+            List<String> parts = Arrays.asList(line.trim().split("\\s+"));
+            if (parts.isEmpty() || parts.get(0).isEmpty()) {
+                return null;
+            }
+            try {
+                ResourceLocation item = new ResourceLocation(parts.get(0));
+                float duration = 1;
+                float delay = 1;
+                for (String part : parts.subList(1, parts.size())) {
+                    int separator = part.indexOf('=');
+                    if (separator < 0) {
+                        return null;
+                    }
+                    float factor = Float.parseFloat(part.substring(separator + 1));
+                    if (!(factor > 0) || Float.isInfinite(factor)) {
+                        return null;
+                    }
+                    switch (part.substring(0, separator)) {
+                        case "duration" -> duration = factor;
+                        case "delay" -> delay = factor;
+                        default -> {
+                            return null;
+                        }
+                    }
+                }
+                return new StimOverride(item, duration, delay);
+            } catch (ResourceLocationException | NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+}
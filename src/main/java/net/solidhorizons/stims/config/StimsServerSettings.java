@@ -0,0 +1,136 @@
+package net.solidhorizons.stims.config;
+
+import com.mojang.logging.LogUtils;
+import net.minecraftforge.common.ForgeConfigSpec;
+import net.minecraftforge.registries.ForgeRegistries;
+import net.solidhorizons.stims.item.custom.StimItem;
+import org.slf4j.Logger;
+
+import java.util.Arrays;
+
+// Immutable copy of StimsServerConfig. A new copy is built and validated whenever the config file is loaded
+// or edited, on whichever thread Forge reports the change on, and swapped in with a single volatile write.
+// The tick and use paths read settings through get() without locking and always see one consistent version.
+public final class StimsServerSettings {
+
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    private static volatile StimsServerSettings current = build(false);
+
+    private final int maxPendingDoses;
+    private final int maxAfterEffectsPerTick;
+    private final long tickBudgetNanos;
+    private final int medicStationRadius;
+    private final int medicStationInterval;
+    private final boolean auditLog;
+    private final int auditQueueCapacity;
+    private final long auditMaxFileBytes;
+    // Per stim id, with the global multipliers and the stim's override already multiplied in
+    private final float[] durationMultipliers;
+    private final float[] delayMultipliers;
+
+    private StimsServerSettings(int maxPendingDoses, int maxAfterEffectsPerTick, long tickBudgetNanos,
+                                int medicStationRadius, int medicStationInterval, boolean auditLog,
+                                int auditQueueCapacity, long auditMaxFileBytes,
+                                float[] durationMultipliers, float[] delayMultipliers) {
+        this.maxPendingDoses = maxPendingDoses;
+        this.maxAfterEffectsPerTick = maxAfterEffectsPerTick;
+        this.tickBudgetNanos = tickBudgetNanos;
+        this.medicStationRadius = medicStationRadius;
+        this.medicStationInterval = medicStationInterval;
+        this.auditLog = auditLog;
+        this.auditQueueCapacity = auditQueueCapacity;
+        this.auditMaxFileBytes = auditMaxFileBytes;
+        this.durationMultipliers = durationMultipliers;
+        this.delayMultipliers = delayMultipliers;
+    }
+
+    public static StimsServerSettings get() {
+        return current;
+    }
+
+    // Called from StimsServerConfig when the file was loaded or changed
+    static void reload() {
+        current = build(true);
+    }
+
+    public int maxPendingDoses() {
+        return maxPendingDoses;
+    }
+
+    public int maxAfterEffectsPerTick() {
+        return maxAfterEffectsPerTick;
+    }
+
+    public long tickBudgetNanos() {
+        return tickBudgetNanos;
+    }
+
+    public int medicStationRadius() {
+        return medicStationRadius;
+    }
+
+    public int medicStationInterval() {
+        return medicStationInterval;
+    }
+
+    public boolean auditLog() {
+        return auditLog;
+    }
+
+    public int auditQueueCapacity() {
+        return auditQueueCapacity;
+    }
+
+    public long auditMaxFileBytes() {
+        return auditMaxFileBytes;
+    }
+
+    // Factor for the durations of the stim's effects
+    public float durationMultiplier(int stimId) {
+        return stimId < durationMultipliers.length ? durationMultipliers[stimId] : 1;
+    }
+
+    // Factor for the delay before the stim's after-effect
+    public float delayMultiplier(int stimId) {
+        return stimId < delayMultipliers.length ? delayMultipliers[stimId] : 1;
+    }
+
+    // Reads the config values, or their defaults while the server config isn't loaded yet
+    private static StimsServerSettings build(boolean loaded) {
+        float[] durationMultipliers = new float[StimItem.count()];
+        float[] delayMultipliers = new float[StimItem.count()];
+        Arrays.fill(durationMultipliers, value(StimsServerConfig.DURATION_MULTIPLIER, loaded).floatValue());
+        Arrays.fill(delayMultipliers, value(StimsServerConfig.DELAY_MULTIPLIER, loaded).floatValue());
+
+        for (String line : value(StimsServerConfig.STIM_OVERRIDES, loaded)) {
+            StimsServerConfig.StimOverride override = StimsServerConfig.StimOverride.parse(line);
+            if (override == null) {
+                // The spec drops malformed entries when it loads the file, this is only a safety net
+                LOGGER.warn("Ignoring malformed stim override \"{}\"", line);
+                continue;
+            }
+            if (!(ForgeRegistries.ITEMS.getValue(override.item()) instanceof StimItem item)) {
+                LOGGER.warn("Ignoring stim override for {}, which is not a stim item", override.item());
+                continue;
+            }
+            durationMultipliers[item.getStimId()] *= override.duration();
+            delayMultipliers[item.getStimId()] *= override.delay();
+        }
+
+        return new StimsServerSettings(
+                value(StimsServerConfig.MAX_PENDING_DOSES, loaded),
+                value(StimsServerConfig.MAX_AFTER_EFFECTS_PER_TICK, loaded),
+                value(StimsServerConfig.TICK_BUDGET_MICROS, loaded) * 1_000L,
+                value(StimsServerConfig.MEDIC_STATION_RADIUS, loaded),
+                value(StimsServerConfig.MEDIC_STATION_INTERVAL, loaded),
+                value(StimsServerConfig.AUDIT_LOG, loaded),
+                value(StimsServerConfig.AUDIT_QUEUE_CAPACITY, loaded),
+                value(StimsServerConfig.AUDIT_MAX_FILE_MEGABYTES, loaded) * 1024L * 1024L,
+                durationMultipliers, delayMultipliers);
+    }
+
+    private static <T> T value(ForgeConfigSpec.ConfigValue<T> value, boolean loaded) {
+        return loaded ? value.get() : value.getDefault();
+    }
+}
@@ -0,0 +1,208 @@
+package net.solidhorizons.stims.gametest;
+
+import com.mojang.logging.LogUtils;
+import net.minecraft.gametest.framework.GameTest;
+import net.minecraft.gametest.framework.GameTestHelper;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.InteractionHand;
+import net.minecraft.world.effect.MobEffects;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.phys.Vec3;
+import net.minecraftforge.gametest.GameTestHolder;
+import net.minecraftforge.gametest.PrefixGameTestTemplate;
+import net.solidhorizons.stims.Stims;
+import net.solidhorizons.stims.config.StimsServerSettings;
+import net.solidhorizons.stims.item.ModItems;
+import net.solidhorizons.stims.item.custom.StimItem;
+import net.solidhorizons.stims.stim.StimDefinition;
+import net.solidhorizons.stims.stim.StimDefinitions;
+import net.solidhorizons.stims.stim.StimDosing;
+import net.solidhorizons.stims.stim.StimMetrics;
+import net.solidhorizons.stims.stim.StimScheduler;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+// Headless tests of the stim pipeline, run with ./gradlew runGameTestServer.
+// In the load test a crowd of mock players keeps injecting random stims while a few probe players are checked for getting their
+// own comedown at the right tick, and the tick time spent in the stim pipeline is held against a budget.
+// The load can be tuned with -Dstims.gametest.players=<n> and the budgets with -Dstims.gametest.meanMicros=<n>
+// and -Dstims.gametest.p99Micros=<n>.
+@GameTestHolder(Stims.MOD_ID)
+@PrefixGameTestTemplate(false)
+public class StimGameTests {
+
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    private static final int LOAD_PLAYERS = Integer.getInteger("stims.gametest.players", 200);
+    private static final int PROBE_PLAYERS = 20;
+    private static final int BYSTANDERS = 5;
+    private static final int INJECT_INTERVAL = 10; // ticks between two injections of the same load player
+    private static final int RUN_TICKS = 200;
+    private static final long MEAN_BUDGET_NANOS = Long.getLong("stims.gametest.meanMicros", 1_000) * 1_000;
+    private static final long P99_BUDGET_NANOS = Long.getLong("stims.gametest.p99Micros", 5_000) * 1_000;
+    private static final int WAKEUP_CYCLES = 6;
+    private static final int WAKEUP_TIMEOUT_TICKS = 600;
+
+    @GameTest(template = "empty_arena", batch = "stims_load", timeoutTicks = RUN_TICKS + 100)
+    public static void comedownsUnderLoad(GameTestHelper helper) {
+        StimItem probeStim = (StimItem) ModItems.XTG12.get();
+        StimDefinition probeDefinition = StimDefinitions.get(probeStim.getStimId());
+        if (probeDefinition == null || !probeDefinition.hasAfterEffect()) {
+            helper.fail("XTG12 needs a definition with an after-effect");
+            return;
+        }
+        int delay = StimDosing.delayTicks(probeDefinition, probeStim.getStimId(), StimsServerSettings.get());
+        if (1 + (PROBE_PLAYERS - 1) * 3 + delay + 2 > RUN_TICKS) {
+            helper.fail("The XTG12 delay is too long for this test");
+            return;
+        }
+
+        Random random = new Random(42);
+        List<ServerPlayer> loadPlayers = new ArrayList<>();
+        List<ServerPlayer> probes = new ArrayList<>();
+        List<ServerPlayer> bystanders = new ArrayList<>();
+        for (int i = 0; i < LOAD_PLAYERS; i++) {
+            loadPlayers.add(spawnPlayer(helper, random));
+        }
+        for (int i = 0; i < PROBE_PLAYERS; i++) {
+            probes.add(spawnPlayer(helper, random));
+        }
+        for (int i = 0; i < BYSTANDERS; i++) {
+            bystanders.add(spawnPlayer(helper, random));
+        }
+
+        long[] tickNanos = new long[RUN_TICKS];
+        long[] injectNanos = new long[RUN_TICKS + 1];
+
+        for (int tick = 1; tick <= RUN_TICKS; tick++) {
+            int currentTick = tick;
+            helper.runAtTickTime(tick, () -> {
+                // Everything the mod did last tick: the injections below plus the scheduler at the end of the tick
+                tickNanos[currentTick - 1] = injectNanos[currentTick - 1] + StimMetrics.lastTickNanos();
+
+                long start = System.nanoTime();
+                for (int i = currentTick % INJECT_INTERVAL; i < loadPlayers.size(); i += INJECT_INTERVAL) {
+                    StimItem stim = StimItem.byId(random.nextInt(StimItem.count()));
+                    inject(helper, loadPlayers.get(i), stim);
+                }
+                injectNanos[currentTick] = System.nanoTime() - start;
+            });
+        }
+
+        // Each probe injects once, staggered over the first ticks, and must get its comedown exactly once it is due
+        for (int i = 0; i < probes.size(); i++) {
+            ServerPlayer probe = probes.get(i);
+            int injectTick = 1 + i * 3;
+            helper.runAtTickTime(injectTick, () -> inject(helper, probe, probeStim));
+            helper.runAtTickTime(injectTick + delay - 1, () -> {
+                if (probe.hasEffect(MobEffects.WITHER)) {
+                    fail(helper, "Probe " + probe.getScoreboardName() + " got its comedown early", loadPlayers, probes, bystanders);
+                }
+            });
+            helper.runAtTickTime(injectTick + delay + 2, () -> {
+                if (!probe.hasEffect(MobEffects.WITHER)) {
+                    fail(helper, "Probe " + probe.getScoreboardName() + " is missing its comedown", loadPlayers, probes, bystanders);
+                }
+            });
+        }
+
+        helper.runAtTickTime(RUN_TICKS + 1, () -> {
+            for (ServerPlayer bystander : bystanders) {
+                if (!bystander.getActiveEffects().isEmpty()) {
+                    fail(helper, "Bystander " + bystander.getScoreboardName() + " got effects of someone else's stim", loadPlayers, probes, bystanders);
+                }
+            }
+
+            // The first ticks only warm up the pipeline
+            long[] samples = Arrays.copyOfRange(tickNanos, INJECT_INTERVAL, RUN_TICKS);
+            Arrays.sort(samples);
+            long mean = Arrays.stream(samples).sum() / samples.length;
+            long p99 = samples[(int) Math.ceil(samples.length * 0.99) - 1];
+            LOGGER.info("Stim load test with {} players: mean {} us, p99 {} us per tick", loadPlayers.size(), mean / 1_000, p99 / 1_000);
+
+            if (mean > MEAN_BUDGET_NANOS || p99 > P99_BUDGET_NANOS) {
+                fail(helper, "Stim tick time over budget: mean " + mean / 1_000 + " us, p99 " + p99 / 1_000 + " us", loadPlayers, probes, bystanders);
+            }
+
+            removePlayers(helper, loadPlayers, probes, bystanders);
+            helper.succeed();
+        });
+    }
+
+    // XTG12 given again every time its comedown has hit, while a Morphine dose stays pending the whole time.
+    // Each XTG12 dose is the player's earliest, but the player must still never have more than one wake-up.
+    @GameTest(template = "empty_arena", batch = "stims_wakeups", timeoutTicks = WAKEUP_TIMEOUT_TICKS)
+    public static void wakeupsDontPileUp(GameTestHelper helper) {
+        StimItem longStim = (StimItem) ModItems.MORPHINE.get();
+        StimItem shortStim = (StimItem) ModItems.XTG12.get();
+        StimDefinition shortDefinition = StimDefinitions.get(shortStim.getStimId());
+        if (shortDefinition == null || !shortDefinition.hasAfterEffect()) {
+            helper.fail("XTG12 needs a definition with an after-effect");
+            return;
+        }
+        int cycleTicks = StimDosing.delayTicks(shortDefinition, shortStim.getStimId(), StimsServerSettings.get()) + 5;
+        int cycles = Math.min(WAKEUP_CYCLES, (WAKEUP_TIMEOUT_TICKS - 20) / cycleTicks);
+        if (cycles < 2) {
+            helper.fail("The XTG12 delay is too long for this test");
+            return;
+        }
+
+        ServerLevel level = helper.getLevel();
+        ServerPlayer player = spawnPlayer(helper, new Random(7));
+        List<ServerPlayer> players = List.of(player);
+        // Wake-ups left over from earlier tests only ever go away, the player may add a single one
+        int baseline = StimScheduler.queueDepth(level);
+
+        helper.runAtTickTime(1, () -> inject(helper, player, longStim));
+        for (int i = 0; i < cycles; i++) {
+            int injectTick = 2 + i * cycleTicks;
+            helper.runAtTickTime(injectTick, () -> inject(helper, player, shortStim));
+            helper.runAtTickTime(injectTick + cycleTicks - 1, () -> {
+                int depth = StimScheduler.queueDepth(level);
+                if (depth > baseline + 1) {
+                    fail(helper, "Wake-ups piled up: " + (depth - baseline) + " for a single player", players);
+                }
+            });
+        }
+
+        helper.runAtTickTime(2 + cycles * cycleTicks, () -> {
+            removePlayers(helper, players);
+            helper.succeed();
+        });
+    }
+
+    private static ServerPlayer spawnPlayer(GameTestHelper helper, Random random) {
+        ServerPlayer player = helper.makeMockServerPlayerInLevel();
+        Vec3 pos = helper.absoluteVec(new Vec3(1 + random.nextDouble() * 7, 1, 1 + random.nextDouble() * 7));
+        player.moveTo(pos.x, pos.y, pos.z);
+        // Obdolbos can roll instant death, keep the crowd alive
+        player.setInvulnerable(true);
+        return player;
+    }
+
+    private static void inject(GameTestHelper helper, ServerPlayer player, StimItem stim) {
+        player.setItemInHand(InteractionHand.MAIN_HAND, new ItemStack(stim));
+        player.getItemInHand(InteractionHand.MAIN_HAND).use(helper.getLevel(), player, InteractionHand.MAIN_HAND);
+    }
+
+    // Mock players stay in the player list until removed, so clean up before failing
+    @SafeVarargs
+    private static void fail(GameTestHelper helper, String message, List<ServerPlayer>... groups) {
+        removePlayers(helper, groups);
+        helper.fail(message);
+    }
+
+    @SafeVarargs
+    private static void removePlayers(GameTestHelper helper, List<ServerPlayer>... groups) {
+        for (List<ServerPlayer> group : groups) {
+            for (ServerPlayer player : group) {
+                helper.getLevel().getServer().getPlayerList().remove(player);
+            }
+        }
+    }
+}
@@ -31,6 +31,8 @@ public class ModCreativeModeTabs {
                         pOutput.accept(ModItems.OBDOLBOS.get());
                         pOutput.accept(ModItems.OBDOLBOS_2.get());
 
+                        pOutput.accept(ModBlocks.MEDIC_STATION.get());
+
                     })
                     .build());
 
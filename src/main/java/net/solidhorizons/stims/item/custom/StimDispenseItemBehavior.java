@@ -0,0 +1,38 @@
+package net.solidhorizons.stims.item.custom;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.BlockSource;
+import net.minecraft.core.dispenser.OptionalDispenseItemBehavior;
+import net.minecraft.world.entity.EntitySelector;
+import net.minecraft.world.entity.LivingEntity;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.level.block.DispenserBlock;
+import net.minecraft.world.phys.AABB;
+import net.solidhorizons.stims.stim.StimDosing;
+
+import java.util.List;
+
+// Lets a dispenser inject the first living entity standing in front of it. When nobody is there or the dose
+// is rejected, the dispenser fails with its usual click and keeps the injector.
+public class StimDispenseItemBehavior extends OptionalDispenseItemBehavior {
+
+    @Override
+    protected ItemStack execute(BlockSource pSource, ItemStack pStack) {
+        setSuccess(false);
+        if (!(pStack.getItem() instanceof StimItem item)) {
+            return pStack;
+        }
+
+        BlockPos pos = pSource.getPos().relative(pSource.getBlockState().getValue(DispenserBlock.FACING));
+        List<LivingEntity> targets = pSource.getLevel().getEntitiesOfClass(LivingEntity.class, new AABB(pos),
+                EntitySelector.NO_SPECTATORS);
+        for (LivingEntity target : targets) {
+            if (StimDosing.dose(target, item.getStimId()) == StimDosing.Result.DOSED) {
+                setSuccess(true);
+                pStack.shrink(1);
+                break;
+            }
+        }
+        return pStack;
+    }
+}
@@ -0,0 +1,72 @@
+package net.solidhorizons.stims.network;
+
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraftforge.network.NetworkDirection;
+import net.minecraftforge.network.NetworkRegistry;
+import net.minecraftforge.network.PacketDistributor;
+import net.minecraftforge.network.simple.SimpleChannel;
+import net.solidhorizons.stims.Stims;
+
+public class ModMessages {
+
+    private static final String PROTOCOL_VERSION = "4";
+
+    // Clients and servers without the mod are accepted, they simply never see these packets
+    private static final SimpleChannel CHANNEL = NetworkRegistry.newSimpleChannel(
+            new ResourceLocation(Stims.MOD_ID, "main"),
+            () -> PROTOCOL_VERSION,
+            NetworkRegistry.acceptMissingOr(PROTOCOL_VERSION),
+            NetworkRegistry.acceptMissingOr(PROTOCOL_VERSION));
+
+    private static int packetId = 0;
+
+    private static int id() {
+        return packetId++;
+    }
+
+    public static void register() {
+        CHANNEL.messageBuilder(StimSyncS2CPacket.class, id(), NetworkDirection.PLAY_TO_CLIENT)
+                .decoder(StimSyncS2CPacket::new)
+                .encoder(StimSyncS2CPacket::toBytes)
+                .consumerMainThread(StimSyncS2CPacket::handle)
+                .add();
+
+        CHANNEL.messageBuilder(StimRulesS2CPacket.class, id(), NetworkDirection.PLAY_TO_CLIENT)
+                .decoder(StimRulesS2CPacket::new)
+                .encoder(StimRulesS2CPacket::toBytes)
+                .consumerMainThread(StimRulesS2CPacket::handle)
+                .add();
+
+        CHANNEL.messageBuilder(StimUseResultS2CPacket.class, id(), NetworkDirection.PLAY_TO_CLIENT)
+                .decoder(StimUseResultS2CPacket::new)
+                .encoder(StimUseResultS2CPacket::toBytes)
+                .consumerMainThread(StimUseResultS2CPacket::handle)
+                .add();
+
+        CHANNEL.messageBuilder(StimPredictedUseC2SPacket.class, id(), NetworkDirection.PLAY_TO_SERVER)
+                .decoder(StimPredictedUseC2SPacket::new)
+                .encoder(StimPredictedUseC2SPacket::toBytes)
+                .consumerMainThread(StimPredictedUseC2SPacket::handle)
+                .add();
+
+        CHANNEL.messageBuilder(StimResyncC2SPacket.class, id(), NetworkDirection.PLAY_TO_SERVER)
+                .decoder(StimResyncC2SPacket::new)
+                .encoder(StimResyncC2SPacket::toBytes)
+                .consumerMainThread(StimResyncC2SPacket::handle)
+                .add();
+    }
+
+    // Whether the player's client has the mod installed
+    public static boolean hasChannel(ServerPlayer player) {
+        return CHANNEL.isRemotePresent(player.connection.connection);
+    }
+
+    public static <MSG> void sendToPlayer(MSG message, ServerPlayer player) {
+        CHANNEL.send(PacketDistributor.PLAYER.with(() -> player), message);
+    }
+
+    public static <MSG> void sendToServer(MSG message) {
+        CHANNEL.sendToServer(message);
+    }
+}
@@ -0,0 +1,38 @@
+package net.solidhorizons.stims.network;
+
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraftforge.network.NetworkEvent;
+import net.solidhorizons.stims.stim.StimCapability;
+import net.solidhorizons.stims.stim.StimDoses;
+
+import java.util.function.Supplier;
+
+// Sent by the client while it handles a use of a stim it predicted, so it arrives right before the vanilla
+// use packet. The server only answers predicted uses with a StimUseResultS2CPacket, which keeps the answers
+// in step with the client's predictions.
+public class StimPredictedUseC2SPacket {
+
+    private final int stimId;
+
+    public StimPredictedUseC2SPacket(int stimId) {
+        this.stimId = stimId;
+    }
+
+    public StimPredictedUseC2SPacket(FriendlyByteBuf buf) {
+        this.stimId = buf.readVarInt();
+    }
+
+    public void toBytes(FriendlyByteBuf buf) {
+        buf.writeVarInt(stimId);
+    }
+
+    public void handle(Supplier<NetworkEvent.Context> supplier) {
+        // Runs on the server main thread
+        ServerPlayer player = supplier.get().getSender();
+        StimDoses doses = player == null ? null : StimCapability.get(player);
+        if (doses != null) {
+            doses.expectPredictedUse(stimId);
+        }
+    }
+}
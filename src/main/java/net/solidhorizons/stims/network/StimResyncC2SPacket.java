@@ -0,0 +1,39 @@
+package net.solidhorizons.stims.network;
+
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraftforge.network.NetworkEvent;
+import net.solidhorizons.stims.stim.StimCapability;
+import net.solidhorizons.stims.stim.StimDoses;
+
+import java.util.function.Supplier;
+
+// Sent by the client when the server never answered one of its predicted uses, e.g. because the use packet
+// was dropped while changing dimension. The client may be showing a consumed injector and a dose the server
+// doesn't know about, so the server resends the whole inventory and the player's pending doses.
+public class StimResyncC2SPacket {
+
+    public StimResyncC2SPacket() {
+    }
+
+    public StimResyncC2SPacket(FriendlyByteBuf buf) {
+    }
+
+    public void toBytes(FriendlyByteBuf buf) {
+    }
+
+    public void handle(Supplier<NetworkEvent.Context> supplier) {
+        // Runs on the server main thread
+        ServerPlayer player = supplier.get().getSender();
+        if (player == null) {
+            return;
+        }
+        StimDoses doses = StimCapability.get(player);
+        if (doses != null) {
+            // The use that flagged this prediction never arrived
+            doses.expectPredictedUse(-1);
+        }
+        player.containerMenu.sendAllDataToRemote();
+        ModMessages.sendToPlayer(StimSyncS2CPacket.of(player), player);
+    }
+}
@@ -0,0 +1,74 @@
+package net.solidhorizons.stims.network;
+
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraftforge.network.NetworkEvent;
+import net.solidhorizons.stims.client.ClientStimData;
+import net.solidhorizons.stims.config.StimsServerSettings;
+import net.solidhorizons.stims.item.custom.StimItem;
+import net.solidhorizons.stims.stim.StimDefinition;
+import net.solidhorizons.stims.stim.StimDefinitions;
+import net.solidhorizons.stims.stim.StimDosing;
+import net.solidhorizons.stims.stim.StimStacking;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.Supplier;
+
+// The parts of the stim definitions a client needs to predict an injection: whether the stim is defined,
+// when its after-effect hits and how it stacks, plus the pending dose limit. Sent on login and after every
+// datapack reload, the effects themselves stay on the server.
+public class StimRulesS2CPacket {
+
+    // Rules of one stim, null in the array when no datapack defines the stim
+    public record Rule(boolean afterEffect, int delayTicks, StimStacking stacking, int maxStacks) {
+    }
+
+    private final Rule[] rules;
+    private final int maxPendingDoses;
+
+    public StimRulesS2CPacket(Rule[] rules, int maxPendingDoses) {
+        this.rules = rules;
+        this.maxPendingDoses = maxPendingDoses;
+    }
+
+    public StimRulesS2CPacket(FriendlyByteBuf buf) {
+        this.rules = new Rule[buf.readVarInt()];
+        for (int i = 0; i < rules.length; i++) {
+            if (buf.readBoolean()) {
+                rules[i] = new Rule(buf.readBoolean(), buf.readVarInt(), buf.readEnum(StimStacking.class), buf.readVarInt());
+            }
+        }
+        this.maxPendingDoses = buf.readVarInt();
+    }
+
+    public static StimRulesS2CPacket of() {
+        StimsServerSettings settings = StimsServerSettings.get();
+        Rule[] rules = new Rule[StimItem.count()];
+        for (int i = 0; i < rules.length; i++) {
+            StimDefinition definition = StimDefinitions.get(i);
+            if (definition != null) {
+                rules[i] = new Rule(definition.hasAfterEffect(), StimDosing.delayTicks(definition, i, settings),
+                        definition.stacking(), definition.maxStacks());
+            }
+        }
+        return new StimRulesS2CPacket(rules, settings.maxPendingDoses());
+    }
+
+    public void toBytes(FriendlyByteBuf buf) {
+        buf.writeVarInt(rules.length);
+        for (@Nullable Rule rule : rules) {
+            buf.writeBoolean(rule != null);
+            if (rule != null) {
+                buf.writeBoolean(rule.afterEffect());
+                buf.writeVarInt(rule.delayTicks());
+                buf.writeEnum(rule.stacking());
+                buf.writeVarInt(rule.maxStacks());
+            }
+        }
+        buf.writeVarInt(maxPendingDoses);
+    }
+
+    public void handle(Supplier<NetworkEvent.Context> supplier) {
+        // Runs on the client main thread
+        ClientStimData.setRules(rules, maxPendingDoses);
+    }
+}
@@ -0,0 +1,59 @@
+package net.solidhorizons.stims.network;
+
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraftforge.network.NetworkEvent;
+import net.solidhorizons.stims.client.ClientStimData;
+import net.solidhorizons.stims.stim.StimCapability;
+import net.solidhorizons.stims.stim.StimDoses;
+
+import java.util.function.Supplier;
+
+// The pending doses of a player, sent at most once per tick by StimSyncBatch.
+// Each dose is sent as its stim id and the number of ticks until its after-effect.
+public class StimSyncS2CPacket {
+
+    private final int[] stimIds;
+    private final int[] dueIn;
+
+    public StimSyncS2CPacket(int[] stimIds, int[] dueIn) {
+        this.stimIds = stimIds;
+        this.dueIn = dueIn;
+    }
+
+    public StimSyncS2CPacket(FriendlyByteBuf buf) {
+        int size = buf.readVarInt();
+        this.stimIds = new int[size];
+        this.dueIn = new int[size];
+        for (int i = 0; i < size; i++) {
+            stimIds[i] = buf.readVarInt();
+            dueIn[i] = buf.readVarInt();
+        }
+    }
+
+    public static StimSyncS2CPacket of(ServerPlayer player) {
+        StimDoses doses = StimCapability.get(player);
+        int size = doses == null ? 0 : doses.size();
+        int[] stimIds = new int[size];
+        int[] dueIn = new int[size];
+        long currentTick = player.level().getGameTime();
+        for (int i = 0; i < size; i++) {
+            stimIds[i] = doses.stimId(i);
+            dueIn[i] = (int) Math.max(0, doses.dueTick(i) - currentTick);
+        }
+        return new StimSyncS2CPacket(stimIds, dueIn);
+    }
+
+    public void toBytes(FriendlyByteBuf buf) {
+        buf.writeVarInt(stimIds.length);
+        for (int i = 0; i < stimIds.length; i++) {
+            buf.writeVarInt(stimIds[i]);
+            buf.writeVarInt(dueIn[i]);
+        }
+    }
+
+    public void handle(Supplier<NetworkEvent.Context> supplier) {
+        // Runs on the client main thread
+        ClientStimData.set(stimIds, dueIn);
+    }
+}
@@ -0,0 +1,36 @@
+package net.solidhorizons.stims.network;
+
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraftforge.network.NetworkEvent;
+import net.solidhorizons.stims.client.ClientStimData;
+
+import java.util.function.Supplier;
+
+// The server's answer to an injection the client predicted, sent right after the stim was used. Only predicted
+// uses are answered (see StimPredictedUseC2SPacket) and in the order they arrive, so the stim id is enough to
+// match the prediction.
+public class StimUseResultS2CPacket {
+
+    private final int stimId;
+    private final boolean accepted;
+
+    public StimUseResultS2CPacket(int stimId, boolean accepted) {
+        this.stimId = stimId;
+        this.accepted = accepted;
+    }
+
+    public StimUseResultS2CPacket(FriendlyByteBuf buf) {
+        this.stimId = buf.readVarInt();
+        this.accepted = buf.readBoolean();
+    }
+
+    public void toBytes(FriendlyByteBuf buf) {
+        buf.writeVarInt(stimId);
+        buf.writeBoolean(accepted);
+    }
+
+    public void handle(Supplier<NetworkEvent.Context> supplier) {
+        // Runs on the client main thread
+        ClientStimData.confirm(stimId, accepted);
+    }
+}
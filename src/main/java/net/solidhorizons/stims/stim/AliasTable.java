@@ -0,0 +1,82 @@
+package net.solidhorizons.stims.stim;
+
+// Walker's alias table, built with Vose's method, for picking one of n weighted outcomes in constant time.
+// Each column holds the probability of keeping its own outcome and the outcome it hands over to otherwise,
+// so a draw is one column pick and one coin flip no matter how many outcomes there are.
+public class AliasTable {
+
+    private final double[] probabilities;
+    private final int[] aliases;
+
+    public AliasTable(double[] weights) {
+        int n = weights.length;
+        if (n == 0) {
+            throw new IllegalArgumentException("An alias table needs at least one outcome");
+        }
+
+        double total = 0;
+        for (double weight : weights) {
+            if (!(weight >= 0) || Double.isInfinite(weight)) {
+                throw new IllegalArgumentException("Outcome weights must be finite and not negative");
+            }
+            total += weight;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("At least one outcome weight must be positive");
+        }
+
+        probabilities = new double[n];
+        aliases = new int[n];
+
+        // Scale so the average column is 1, then pair each small column with a large one
+        double[] scaled = new double[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int smallSize = 0;
+        int largeSize = 0;
+        for (int i = 0; i < n; i++) {
+            scaled[i] = weights[i] * n / total;
+            if (scaled[i] < 1) {
+                small[smallSize++] = i;
+            } else {
+                large[largeSize++] = i;
+            }
+        }
+
+        while (smallSize > 0 && largeSize > 0) {
+            int less = small[--smallSize];
+            int more = large[--largeSize];
+            probabilities[less] = scaled[less];
+            aliases[less] = more;
+            scaled[more] = scaled[more] + scaled[less] - 1;
+            if (scaled[more] < 1) {
+                small[smallSize++] = more;
+            } else {
+                large[largeSize++] = more;
+            }
+        }
+
+        // Whatever is left is 1 up to rounding errors
+        while (largeSize > 0) {
+            int index = large[--largeSize];
+            probabilities[index] = 1;
+            aliases[index] = index;
+        }
+        while (smallSize > 0) {
+            int index = small[--smallSize];
+            probabilities[index] = 1;
+            aliases[index] = index;
+        }
+    }
+
+    public int size() {
+        return probabilities.length;
+    }
+
+    // Pick an outcome from 64 random bits: the high half picks the column, the low half flips the coin
+    public int sample(long bits) {
+        int column = (int) (((bits >>> 32) * probabilities.length) >>> 32);
+        double coin = (bits & 0xFFFFFFFFL) * 0x1.0p-32;
+        return coin < probabilities[column] ? column : aliases[column];
+    }
+}
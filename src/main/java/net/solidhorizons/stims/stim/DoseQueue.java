@@ -0,0 +1,119 @@
+package net.solidhorizons.stims.stim;
+
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+
+import java.util.Arrays;
+
+// Binary min-heap of (due tick, entity id) pairs backed by two primitive arrays.
+// Used by the StimScheduler so that queueing and polling wake-ups never allocates once the arrays
+// have grown to the working size. Holds at most one entry per entity: adding an entity that is already
+// queued only moves its entry earlier, so the heap never outgrows the number of entities with doses.
+// Not thread-safe.
+public class DoseQueue {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private long[] dueTicks = new long[INITIAL_CAPACITY];
+    private int[] entityIds = new int[INITIAL_CAPACITY];
+    private int size;
+    // Heap index of each queued entity
+    private final Int2IntOpenHashMap positions = new Int2IntOpenHashMap();
+
+    public DoseQueue() {
+        positions.defaultReturnValue(-1);
+    }
+
+    // Queue a wake-up for the entity, or move its queued one to the given tick if that is earlier
+    public void add(long dueTick, int entityId) {
+        int index = positions.get(entityId);
+        if (index >= 0) {
+            if (dueTick < dueTicks[index]) {
+                siftUp(index, dueTick, entityId);
+            }
+            return;
+        }
+
+        if (size == dueTicks.length) {
+            dueTicks = Arrays.copyOf(dueTicks, size * 2);
+            entityIds = Arrays.copyOf(entityIds, size * 2);
+        }
+        siftUp(size++, dueTick, entityId);
+    }
+
+    // Due tick of the earliest entry, or Long.MAX_VALUE when the queue is empty
+    public long peekDueTick() {
+        return size == 0 ? Long.MAX_VALUE : dueTicks[0];
+    }
+
+    public int peekEntityId() {
+        return entityIds[0];
+    }
+
+    // Remove the earliest entry. Read it with peekDueTick() and peekEntityId() first.
+    public void removeFirst() {
+        positions.remove(entityIds[0]);
+        int last = --size;
+        if (last == 0) {
+            return;
+        }
+        long dueTick = dueTicks[last];
+        int entityId = entityIds[last];
+
+        // Sift the former last entry down from the top of the heap
+        int index = 0;
+        int half = last >>> 1;
+        while (index < half) {
+            int child = (index << 1) + 1;
+            int right = child + 1;
+            if (right < last && dueTicks[right] < dueTicks[child]) {
+                child = right;
+            }
+            if (dueTick <= dueTicks[child]) {
+                break;
+            }
+            move(child, index);
+            index = child;
+        }
+        dueTicks[index] = dueTick;
+        entityIds[index] = entityId;
+        positions.put(entityId, index);
+    }
+
+    public boolean contains(int entityId) {
+        return positions.containsKey(entityId);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+        positions.clear();
+    }
+
+    // Place the entry at the given index, moving it up past every later parent
+    private void siftUp(int index, long dueTick, int entityId) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (dueTicks[parent] <= dueTick) {
+                break;
+            }
+            move(parent, index);
+            index = parent;
+        }
+        dueTicks[index] = dueTick;
+        entityIds[index] = entityId;
+        positions.put(entityId, index);
+    }
+
+    private void move(int from, int to) {
+        dueTicks[to] = dueTicks[from];
+        entityIds[to] = entityIds[from];
+        positions.put(entityIds[to], to);
+    }
+}
@@ -0,0 +1,21 @@
+package net.solidhorizons.stims.stim;
+
+import net.minecraft.world.effect.MobEffectInstance;
+import net.minecraft.world.entity.LivingEntity;
+
+// Applies the effects of a stim stage to a living entity right away. LivingEntity already keeps the stronger
+// of two instances of the same effect and sends every change to the clients itself.
+public record EntityEffectSink(LivingEntity entity) implements StimEffectSink {
+
+    @Override
+    public void clearEffects() {
+        entity.removeAllEffects();
+    }
+
+    @Override
+    public void addEffect(StimEffect effect, int amplifierBonus, float durationFactor) {
+        int duration = durationFactor != 1 ? Math.max(1, Math.round(effect.durationTicks() * durationFactor)) : effect.durationTicks();
+        // LivingEntity keeps and mutates the instance it is given, so a fresh one is needed every time
+        entity.addEffect(new MobEffectInstance(effect.effect(), duration, effect.amplifier() + amplifierBonus, false, false));
+    }
+}
@@ -0,0 +1,326 @@
+package net.solidhorizons.stims.stim;
+
+import net.minecraft.core.Direction;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.nbt.StringTag;
+import net.minecraft.nbt.Tag;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.entity.LivingEntity;
+import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.item.Item;
+import net.minecraftforge.common.capabilities.Capability;
+import net.minecraftforge.common.capabilities.CapabilityManager;
+import net.minecraftforge.common.capabilities.CapabilityToken;
+import net.minecraftforge.common.capabilities.ICapabilitySerializable;
+import net.minecraftforge.common.capabilities.RegisterCapabilitiesEvent;
+import net.minecraftforge.common.util.LazyOptional;
+import net.minecraftforge.common.util.NonNullSupplier;
+import net.minecraftforge.event.AttachCapabilitiesEvent;
+import net.minecraftforge.event.entity.EntityJoinLevelEvent;
+import net.minecraftforge.event.entity.living.LivingDeathEvent;
+import net.minecraftforge.event.entity.player.PlayerEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.registries.ForgeRegistries;
+import net.solidhorizons.stims.Stims;
+import net.solidhorizons.stims.config.StimsServerSettings;
+import net.solidhorizons.stims.item.custom.StimItem;
+import net.solidhorizons.stims.network.ModMessages;
+import net.solidhorizons.stims.network.StimSyncS2CPacket;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Attaches a StimDoses record to every living entity on the server and saves it with the entity.
+// Doses are written as parallel int arrays relative to the save time, with the stims stored once in a
+// small palette of item ids, so pending after-effects survive logouts, chunk unloads and server restarts.
+// Tolerance shares the palette and is saved as the level it has worn off to at save time, packed into an int
+// array with Float.floatToIntBits like the other fields.
+// The record lives and dies with its entity, so nothing has to be cleaned up when a mob despawns or unloads:
+// the scheduler only knows entity ids, and a wake-up for an entity that is gone is simply dropped.
+// Most mobs never see a stim, so an untouched record holds only shared empty arrays and saves as an empty tag.
+public class StimCapability {
+
+    public static final Capability<StimDoses> STIM_DOSES = CapabilityManager.get(new CapabilityToken<>() {
+    });
+
+    private static final ResourceLocation ID = new ResourceLocation(Stims.MOD_ID, "stim_doses");
+
+    private static final String PALETTE_KEY = "Palette";
+    private static final String STIMS_KEY = "Stims";
+    private static final String DUE_IN_KEY = "DueIn";
+    private static final String STACKS_KEY = "Stacks";
+    private static final String OUTCOMES_KEY = "Outcomes";
+    private static final String ROLLS_KEY = "Rolls";
+    private static final String TOLERANCE_STIMS_KEY = "ToleranceStims";
+    private static final String TOLERANCE_KEY = "Tolerance";
+
+    // Returns the doses of the entity, or null if the capability is missing (e.g. already invalidated or on the client)
+    @Nullable
+    public static StimDoses get(LivingEntity entity) {
+        return entity.getCapability(STIM_DOSES).orElse(null);
+    }
+
+    // Mod event bus
+    public static void onRegisterCapabilities(RegisterCapabilitiesEvent event) {
+        event.register(StimDoses.class);
+    }
+
+    // Forge event bus
+    @SubscribeEvent
+    public static void onAttachCapabilities(AttachCapabilitiesEvent<Entity> event) {
+        if (event.getObject() instanceof LivingEntity entity && !entity.level().isClientSide) {
+            Provider provider = new Provider(entity);
+            event.addCapability(ID, provider);
+            event.addListener(provider::invalidate);
+        }
+    }
+
+    // The player entity is recreated on respawn and when returning from the End, keep their doses
+    @SubscribeEvent
+    public static void onPlayerClone(PlayerEvent.Clone event) {
+        Player original = event.getOriginal();
+        original.reviveCaps();
+        StimDoses oldDoses = get(original);
+        StimDoses newDoses = get(event.getEntity());
+        if (oldDoses != null && newDoses != null) {
+            newDoses.copyFrom(oldDoses);
+        }
+        original.invalidateCaps();
+    }
+
+    // Covers logging in, changing dimension, respawning and mobs loaded with their chunk. Wake-ups are kept
+    // per level, so the level an entity joins has to learn about its doses, and doses read from disk are only
+    // anchored to the game time now. A wake-up left behind in an old level finds no entity and is dropped.
+    @SubscribeEvent
+    public static void onEntityJoinLevel(EntityJoinLevelEvent event) {
+        if (event.getLevel().isClientSide() || !(event.getEntity() instanceof LivingEntity entity)) {
+            return;
+        }
+        StimDoses doses = get(entity);
+        if (doses == null) {
+            return;
+        }
+        doses.rebase(event.getLevel().getGameTime());
+        // A wake-up queued in the level the entity came from doesn't reach it here
+        doses.setWakeTick(Long.MAX_VALUE);
+        if (!doses.isEmpty()) {
+            StimScheduler.wakeAt(entity, doses, doses.nextDueTick());
+        }
+        // The client forgets the doses on logout and otherwise only hears about them when they change, so the
+        // comedown HUD and the injection prediction need a fresh copy after login, respawn and dimension changes
+        if (entity instanceof ServerPlayer player && ModMessages.hasChannel(player)) {
+            ModMessages.sendToPlayer(StimSyncS2CPacket.of(player), player);
+        }
+    }
+
+    // Dead mobs don't get comedowns. Players keep their doses, they are copied over on respawn.
+    @SubscribeEvent
+    public static void onLivingDeath(LivingDeathEvent event) {
+        LivingEntity entity = event.getEntity();
+        if (entity instanceof Player || entity.level().isClientSide) {
+            return;
+        }
+        StimDoses doses = get(entity);
+        if (doses != null) {
+            doses.clear();
+        }
+    }
+
+    private static class Provider implements ICapabilitySerializable<CompoundTag>, NonNullSupplier<StimDoses> {
+        private final LivingEntity entity;
+        private final StimDoses doses = new StimDoses();
+        // Supplied by the provider itself, a lambda would be one more object for every living entity
+        private final LazyOptional<StimDoses> optional = LazyOptional.of(this);
+
+        Provider(LivingEntity entity) {
+            this.entity = entity;
+        }
+
+        @Override
+        public @NotNull StimDoses get() {
+            return doses;
+        }
+
+        @Override
+        public @NotNull <T> LazyOptional<T> getCapability(@NotNull Capability<T> cap, @Nullable Direction side) {
+            return STIM_DOSES.orEmpty(cap, optional);
+        }
+
+        void invalidate() {
+            optional.invalidate();
+        }
+
+        @Override
+        public CompoundTag serializeNBT() {
+            // Forge writes a tag for every provider, keep it empty and cheap for entities that never had a stim
+            StimTolerance tolerance = doses.toleranceIfPresent();
+            if (doses.isEmpty() && doses.rolls() == 0 && (tolerance == null || tolerance.size() == 0)) {
+                return new CompoundTag();
+            }
+
+            CompoundTag tag = new CompoundTag();
+            // The roll count is kept even without doses, it makes the entity's outcomes reproducible
+            if (doses.rolls() != 0) {
+                tag.putLong(ROLLS_KEY, doses.rolls());
+            }
+            ListTag palette = new ListTag();
+            Map<Integer, Integer> paletteIndex = new HashMap<>();
+            writeTolerance(tag, palette, paletteIndex);
+
+            int size = doses.size();
+            if (size == 0) {
+                if (!palette.isEmpty()) {
+                    tag.put(PALETTE_KEY, palette);
+                }
+                return tag;
+            }
+
+            // Doses that were never rebased are still relative to the last save
+            long now = doses.isRelative() ? 0 : entity.level().getGameTime();
+
+            int[] stims = new int[size];
+            int[] dueIn = new int[size];
+            int[] stacks = new int[size];
+            int[] outcomes = new int[size];
+
+            for (int i = 0; i < size; i++) {
+                stims[i] = paletteIndex(doses.stimId(i), palette, paletteIndex);
+                dueIn[i] = (int) (doses.dueTick(i) - now);
+                stacks[i] = doses.stacks(i);
+                outcomes[i] = doses.outcome(i);
+            }
+
+            tag.put(PALETTE_KEY, palette);
+            tag.putIntArray(STIMS_KEY, stims);
+            tag.putIntArray(DUE_IN_KEY, dueIn);
+            tag.putIntArray(STACKS_KEY, stacks);
+            tag.putIntArray(OUTCOMES_KEY, outcomes);
+            return tag;
+        }
+
+        // Tolerance is saved as the level it has worn off to by now, leaving out stims it has worn off for
+        private void writeTolerance(CompoundTag tag, ListTag palette, Map<Integer, Integer> paletteIndex) {
+            StimTolerance tolerance = doses.toleranceIfPresent();
+            if (tolerance == null) {
+                return;
+            }
+            long now = tolerance.isRelative() ? 0 : entity.level().getGameTime();
+            int[] stims = new int[tolerance.size()];
+            int[] values = new int[tolerance.size()];
+            int count = 0;
+            for (int i = 0; i < tolerance.size(); i++) {
+                int stimId = tolerance.stimId(i);
+                StimDefinition definition = StimDefinitions.get(stimId);
+                if (definition == null || definition.tolerance() == null) {
+                    continue;
+                }
+                float value = tolerance.valueAt(i, now, definition.tolerance().halfLifeTicks());
+                if (value >= 0.001F) {
+                    stims[count] = paletteIndex(stimId, palette, paletteIndex);
+                    values[count] = Float.floatToIntBits(value);
+                    count++;
+                }
+            }
+            if (count > 0) {
+                tag.putIntArray(TOLERANCE_STIMS_KEY, Arrays.copyOf(stims, count));
+                tag.putIntArray(TOLERANCE_KEY, Arrays.copyOf(values, count));
+            }
+        }
+
+        private static int paletteIndex(int stimId, ListTag palette, Map<Integer, Integer> paletteIndex) {
+            Integer index = paletteIndex.get(stimId);
+            if (index == null) {
+                index = palette.size();
+                paletteIndex.put(stimId, index);
+                palette.add(StringTag.valueOf(ForgeRegistries.ITEMS.getKey(StimItem.byId(stimId)).toString()));
+            }
+            return index;
+        }
+
+        @Override
+        public void deserializeNBT(CompoundTag tag) {
+            if (tag.isEmpty()) {
+                return;
+            }
+            doses.setRolls(tag.getLong(ROLLS_KEY));
+
+            ListTag palette = tag.getList(PALETTE_KEY, Tag.TAG_STRING);
+            int[] paletteIds = new int[palette.size()];
+            for (int i = 0; i < palette.size(); i++) {
+                ResourceLocation itemId = ResourceLocation.tryParse(palette.getString(i));
+                Item item = itemId == null ? null : ForgeRegistries.ITEMS.getValue(itemId);
+                // Stims that no longer exist are dropped
+                paletteIds[i] = item instanceof StimItem stimItem ? stimItem.getStimId() : -1;
+            }
+
+            int[] stims = tag.getIntArray(STIMS_KEY);
+            int[] dueIn = tag.getIntArray(DUE_IN_KEY);
+            // Missing in data saved before doses could stack, a stack count of 0 is loaded as a single stack
+            int[] stacks = Arrays.copyOf(tag.getIntArray(STACKS_KEY), stims.length);
+            int[] outcomes = tag.getIntArray(OUTCOMES_KEY);
+            if (outcomes.length < stims.length) {
+                int saved = outcomes.length;
+                outcomes = Arrays.copyOf(outcomes, stims.length);
+                Arrays.fill(outcomes, saved, stims.length, StimDoses.NO_OUTCOME);
+            }
+
+            // Resolve palette indices in place and compact away unknown stims
+            int count = 0;
+            for (int i = 0; i < Math.min(stims.length, dueIn.length); i++) {
+                int index = stims[i];
+                if (index < 0 || index >= paletteIds.length || paletteIds[index] < 0) {
+                    continue;
+                }
+                stims[count] = paletteIds[index];
+                dueIn[count] = dueIn[i];
+                stacks[count] = stacks[i];
+                outcomes[count] = outcomes[i];
+                count++;
+            }
+
+            doses.loadRelative(Arrays.copyOf(stims, count), Arrays.copyOf(dueIn, count),
+                    Arrays.copyOf(stacks, count), Arrays.copyOf(outcomes, count), StimsServerSettings.get().maxPendingDoses());
+
+            int[] toleranceStims = tag.getIntArray(TOLERANCE_STIMS_KEY);
+            float[] toleranceValues = readTolerance(tag);
+            int toleranceCount = 0;
+            float[] values = new float[toleranceStims.length];
+            for (int i = 0; i < Math.min(toleranceStims.length, toleranceValues.length); i++) {
+                int index = toleranceStims[i];
+                if (index < 0 || index >= paletteIds.length || paletteIds[index] < 0) {
+                    continue;
+                }
+                toleranceStims[toleranceCount] = paletteIds[index];
+                values[toleranceCount] = toleranceValues[i];
+                toleranceCount++;
+            }
+            if (toleranceCount > 0 || doses.toleranceIfPresent() != null) {
+                doses.tolerance().loadRelative(Arrays.copyOf(toleranceStims, toleranceCount), Arrays.copyOf(values, toleranceCount));
+            }
+        }
+
+        // Tolerance levels packed with Float.floatToIntBits, or a list of float tags as written by older versions
+        private static float[] readTolerance(CompoundTag tag) {
+            if (tag.contains(TOLERANCE_KEY, Tag.TAG_LIST)) {
+                ListTag list = tag.getList(TOLERANCE_KEY, Tag.TAG_FLOAT);
+                float[] values = new float[list.size()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = list.getFloat(i);
+                }
+                return values;
+            }
+            int[] bits = tag.getIntArray(TOLERANCE_KEY);
+            float[] values = new float[bits.length];
+            for (int i = 0; i < bits.length; i++) {
+                values[i] = Float.intBitsToFloat(bits[i]);
+            }
+            return values;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package net.solidhorizons.stims.stim;
+
+import net.minecraft.resources.ResourceLocation;
+import org.jetbrains.annotations.Nullable;
+
+// Immutable definition of a stim as loaded from data/<namespace>/stims/*.json.
+// With correlated outcomes the after-effect uses the outcome the initial effect rolled instead of rolling again.
+// Stims without a tolerance block never build tolerance.
+public record StimDefinition(ResourceLocation item, int delayTicks, StimStacking stacking, int maxStacks,
+                             boolean correlatedOutcomes, StimStage initial, StimStage after,
+                             @Nullable StimToleranceRule tolerance) {
+
+    public boolean hasAfterEffect() {
+        return !after.isEmpty();
+    }
+
+    // Extra amplifier levels for the effects of a dose with the given number of stacks
+    public int amplifierBonus(int stacks) {
+        return stacking == StimStacking.ESCALATE ? Math.min(stacks, maxStacks) - 1 : 0;
+    }
+}
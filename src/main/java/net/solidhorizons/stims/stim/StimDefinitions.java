@@ -0,0 +1,197 @@
+package net.solidhorizons.stims.stim;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.mojang.logging.LogUtils;
+import net.minecraft.ResourceLocationException;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.packs.resources.ResourceManager;
+import net.minecraft.server.packs.resources.SimpleJsonResourceReloadListener;
+import net.minecraft.util.GsonHelper;
+import net.minecraft.util.profiling.ProfilerFiller;
+import net.minecraft.world.effect.MobEffect;
+import net.minecraft.world.item.Item;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraftforge.event.AddReloadListenerEvent;
+import net.minecraftforge.event.OnDatapackSyncEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.registries.ForgeRegistries;
+import net.solidhorizons.stims.item.custom.StimItem;
+import net.solidhorizons.stims.network.ModMessages;
+import net.solidhorizons.stims.network.StimRulesS2CPacket;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.util.List;
+import java.util.Map;
+
+// Loads stim definitions from data/<namespace>/stims/*.json and compiles them into a flat table indexed by
+// the numeric stim id. A reload builds a complete new table and swaps it in with a single write, so the
+// tick and use paths never see a half-built configuration.
+public class StimDefinitions extends SimpleJsonResourceReloadListener {
+
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final Gson GSON = new GsonBuilder().create();
+    private static final int TICKS_PER_SECOND = 20;
+
+    private static volatile StimDefinition[] table = new StimDefinition[0];
+
+    public StimDefinitions() {
+        super(GSON, "stims");
+    }
+
+    // Definition of the stim with the given id, or null if no datapack defines it
+    @Nullable
+    public static StimDefinition get(int stimId) {
+        StimDefinition[] current = table;
+        return stimId < current.length ? current[stimId] : null;
+    }
+
+    @SubscribeEvent
+    public static void onAddReloadListeners(AddReloadListenerEvent event) {
+        event.addListener(new StimDefinitions());
+    }
+
+    // Clients need the stacking rules and delays to predict injections. Fired for a single player on login
+    // and for everyone after /reload, in both cases after the new table is in place.
+    @SubscribeEvent
+    public static void onDatapackSync(OnDatapackSyncEvent event) {
+        syncRules(event.getPlayer() != null ? List.of(event.getPlayer()) : event.getPlayerList().getPlayers());
+    }
+
+    // Send the rules clients predict injections with to the given players. Server thread only.
+    public static void syncRules(List<ServerPlayer> players) {
+        StimRulesS2CPacket packet = StimRulesS2CPacket.of();
+        for (ServerPlayer player : players) {
+            if (ModMessages.hasChannel(player)) {
+                ModMessages.sendToPlayer(packet, player);
+            }
+        }
+    }
+
+    @Override
+    protected void apply(Map<ResourceLocation, JsonElement> files, ResourceManager resourceManager, ProfilerFiller profiler) {
+        StimDefinition[] compiled = new StimDefinition[StimItem.count()];
+        // The file each definition came from, to report two files for the same stim
+        ResourceLocation[] sources = new ResourceLocation[compiled.length];
+        int count = 0;
+
+        for (Map.Entry<ResourceLocation, JsonElement> entry : files.entrySet()) {
+            try {
+                StimDefinition definition = parse(GsonHelper.convertToJsonObject(entry.getValue(), "stim"));
+                Item item = ForgeRegistries.ITEMS.getValue(definition.item());
+                if (!(item instanceof StimItem stimItem)) {
+                    LOGGER.error("Stim definition {} refers to {}, which is not a stim item", entry.getKey(), definition.item());
+                    continue;
+                }
+                int stimId = stimItem.getStimId();
+                if (sources[stimId] != null) {
+                    // The files come in no particular order, so settle on one that doesn't change between reloads
+                    ResourceLocation kept = sources[stimId].compareTo(entry.getKey()) < 0 ? sources[stimId] : entry.getKey();
+                    LOGGER.warn("Stim definitions {} and {} both define {}, using {}", sources[stimId], entry.getKey(), definition.item(), kept);
+                    if (kept == sources[stimId]) {
+                        continue;
+                    }
+                } else {
+                    count++;
+                }
+                compiled[stimId] = definition;
+                sources[stimId] = entry.getKey();
+            } catch (IllegalArgumentException | JsonParseException | ResourceLocationException e) {
+                LOGGER.error("Couldn't parse stim definition {}", entry.getKey(), e);
+            }
+        }
+
+        table = compiled;
+        LOGGER.info("Loaded {} stim definitions", count);
+    }
+
+    private static StimDefinition parse(JsonObject json) {
+        ResourceLocation item = new ResourceLocation(GsonHelper.getAsString(json, "item"));
+        int delayTicks = GsonHelper.getAsInt(json, "delay_seconds", 0) * TICKS_PER_SECOND;
+        StimStacking stacking = StimStacking.byName(GsonHelper.getAsString(json, "stacking", StimStacking.REFRESH.getSerializedName()));
+        int maxStacks = GsonHelper.getAsInt(json, "max_stacks", 1);
+        if (maxStacks < 1) {
+            throw new JsonParseException("max_stacks must be at least 1");
+        }
+        StimStage initial = parseStage(GsonHelper.getAsJsonObject(json, "initial", null));
+        StimStage after = parseStage(GsonHelper.getAsJsonObject(json, "after", null));
+        boolean correlatedOutcomes = GsonHelper.getAsBoolean(json, "correlated_outcomes", false);
+        if (correlatedOutcomes && initial.outcomeCount() != after.outcomeCount()) {
+            throw new JsonParseException("correlated_outcomes needs as many initial outcomes as after outcomes");
+        }
+        StimToleranceRule tolerance = parseTolerance(GsonHelper.getAsJsonObject(json, "tolerance", null));
+        return new StimDefinition(item, delayTicks, stacking, maxStacks, correlatedOutcomes, initial, after, tolerance);
+    }
+
+    @Nullable
+    private static StimToleranceRule parseTolerance(@Nullable JsonObject json) {
+        if (json == null) {
+            return null;
+        }
+
+        float perDose = GsonHelper.getAsFloat(json, "per_dose", 1);
+        int halfLifeTicks = GsonHelper.getAsInt(json, "half_life_seconds") * TICKS_PER_SECOND;
+        float potencyLoss = GsonHelper.getAsFloat(json, "potency_loss", 0);
+        float overdoseAt = GsonHelper.getAsFloat(json, "overdose_at", 0);
+        if (perDose <= 0 || halfLifeTicks <= 0) {
+            throw new JsonParseException("per_dose and half_life_seconds must be positive");
+        }
+        if (potencyLoss < 0 || overdoseAt < 0) {
+            throw new JsonParseException("potency_loss and overdose_at must not be negative");
+        }
+        StimStage overdose = parseStage(GsonHelper.getAsJsonObject(json, "overdose", null));
+        return new StimToleranceRule(perDose, halfLifeTicks, potencyLoss, overdoseAt, overdose);
+    }
+
+    private static StimStage parseStage(@Nullable JsonObject json) {
+        if (json == null) {
+            return StimStage.EMPTY;
+        }
+
+        boolean clearEffects = GsonHelper.getAsBoolean(json, "clear_effects", false);
+        int durationSeconds = GsonHelper.getAsInt(json, "duration_seconds", 0);
+
+        StimEffect[][] outcomes;
+        double[] weights;
+        if (json.has("outcomes")) {
+            JsonArray array = GsonHelper.getAsJsonArray(json, "outcomes");
+            if (array.isEmpty()) {
+                throw new JsonParseException("outcomes must not be empty");
+            }
+            outcomes = new StimEffect[array.size()][];
+            weights = new double[array.size()];
+            for (int i = 0; i < array.size(); i++) {
+                JsonObject outcome = GsonHelper.convertToJsonObject(array.get(i), "outcome");
+                outcomes[i] = parseEffects(GsonHelper.getAsJsonArray(outcome, "effects"), durationSeconds);
+                // Outcomes are equally likely unless weighted
+                weights[i] = GsonHelper.getAsDouble(outcome, "weight", 1);
+            }
+        } else {
+            outcomes = new StimEffect[][]{parseEffects(GsonHelper.getAsJsonArray(json, "effects", new JsonArray()), durationSeconds)};
+            weights = new double[]{1};
+        }
+
+        return new StimStage(clearEffects, outcomes, weights);
+    }
+
+    private static StimEffect[] parseEffects(JsonArray array, int defaultDurationSeconds) {
+        StimEffect[] effects = new StimEffect[array.size()];
+        for (int i = 0; i < array.size(); i++) {
+            JsonObject json = GsonHelper.convertToJsonObject(array.get(i), "effect");
+            ResourceLocation effectId = new ResourceLocation(GsonHelper.getAsString(json, "effect"));
+            MobEffect effect = ForgeRegistries.MOB_EFFECTS.getValue(effectId);
+            if (effect == null) {
+                throw new JsonParseException("Unknown effect " + effectId);
+            }
+            int durationSeconds = GsonHelper.getAsInt(json, "duration_seconds", defaultDurationSeconds);
+            int amplifier = GsonHelper.getAsInt(json, "amplifier", 0);
+            effects[i] = new StimEffect(effect, durationSeconds * TICKS_PER_SECOND, amplifier);
+        }
+        return effects;
+    }
+}
@@ -0,0 +1,263 @@
+package net.solidhorizons.stims.stim;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+// Per-entity record of stim doses that are still active or waiting for their after-effect.
+// Doses are stored in parallel primitive arrays keyed by the numeric stim id, so the memory and the
+// tick cost of an entity only depend on its own doses. Instances are attached through StimCapability.
+// There is at most one dose per stim: another injection of a pending stim updates its dose in place
+// (see StimStacking), with the number of merged injections kept as its stack count.
+// Stims with correlated outcomes also remember which outcome the injection rolled, so the after-effect can
+// follow it, and the record counts the outcome rolls of its owner to drive their StimRandom stream.
+public class StimDoses {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    public static final int NO_OUTCOME = -1;
+
+    private static final int[] NO_INTS = new int[0];
+    private static final long[] NO_LONGS = new long[0];
+
+    // Every living entity has a record, the arrays are only allocated once it actually gets a dose
+    private int size;
+    private int[] stimIds = NO_INTS;
+    private long[] dueTicks = NO_LONGS;
+    private int[] stacks = NO_INTS;
+    private int[] outcomes = NO_INTS;
+
+    // Number of outcome rolls made for the owner so far, survives clearing the doses
+    private long rolls;
+
+    // Doses loaded from disk are stored relative to the save time until the owner is back in a level
+    private boolean relative;
+
+    // Outlives the doses, tolerance wears off long after the after-effect has hit. Only created once the owner
+    // is given a stim with tolerance.
+    private StimTolerance tolerance;
+
+    // Tick of the wake-up queued for the owner in the level it is in, see StimScheduler.wakeAt. Not saved.
+    private long wakeTick = Long.MAX_VALUE;
+
+    // Stim whose next use the owner's client predicted, see StimPredictedUseC2SPacket. Not saved.
+    private int predictedUse = -1;
+
+    // Receives every dose whose after-effect has come due. The target is passed through so callers can
+    // use a non-capturing method reference and draining doesn't allocate.
+    @FunctionalInterface
+    public interface DueConsumer<T> {
+        void accept(T target, int stimId, int stacks, int outcome, long dueTick);
+    }
+
+    public void add(int stimId, long dueTick) {
+        add(stimId, dueTick, 1, NO_OUTCOME);
+    }
+
+    public void add(int stimId, long dueTick, int stackCount, int outcome) {
+        if (size == stimIds.length) {
+            int capacity = Math.max(INITIAL_CAPACITY, size * 2);
+            stimIds = Arrays.copyOf(stimIds, capacity);
+            dueTicks = Arrays.copyOf(dueTicks, capacity);
+            stacks = Arrays.copyOf(stacks, capacity);
+            outcomes = Arrays.copyOf(outcomes, capacity);
+        }
+        stimIds[size] = stimId;
+        dueTicks[size] = dueTick;
+        stacks[size] = stackCount;
+        outcomes[size] = outcome;
+        size++;
+    }
+
+    // Add a dose of the stim, or overwrite the pending dose of the same stim
+    public void put(int stimId, long dueTick, int stackCount, int outcome) {
+        int index = indexOf(stimId);
+        if (index < 0) {
+            add(stimId, dueTick, stackCount, outcome);
+        } else {
+            dueTicks[index] = dueTick;
+            stacks[index] = stackCount;
+            outcomes[index] = outcome;
+        }
+    }
+
+    // Index of the pending dose of the stim, or -1 if there is none
+    public int indexOf(int stimId) {
+        for (int i = 0; i < size; i++) {
+            if (stimIds[i] == stimId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Hand every dose that is due at the given tick to the consumer and forget about it.
+    // Returns the number of doses drained.
+    public <T> int drainDue(long currentTick, T target, DueConsumer<T> consumer) {
+        int drained = 0;
+        // Walk backwards so removed slots can be filled with the last entry
+        for (int i = size - 1; i >= 0; i--) {
+            if (dueTicks[i] <= currentTick) {
+                int stimId = stimIds[i];
+                int stackCount = stacks[i];
+                int outcome = outcomes[i];
+                long dueTick = dueTicks[i];
+                removeAt(i);
+                consumer.accept(target, stimId, stackCount, outcome, dueTick);
+                drained++;
+            }
+        }
+        return drained;
+    }
+
+    // Earliest tick any of the doses is due, or Long.MAX_VALUE when nothing is pending
+    public long nextDueTick() {
+        long next = Long.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            next = Math.min(next, dueTicks[i]);
+        }
+        return next;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int stimId(int index) {
+        return stimIds[index];
+    }
+
+    public long dueTick(int index) {
+        return dueTicks[index];
+    }
+
+    public int stacks(int index) {
+        return stacks[index];
+    }
+
+    // Outcome the injection rolled, or NO_OUTCOME if the after-effect rolls its own
+    public int outcome(int index) {
+        return outcomes[index];
+    }
+
+    // Index of the next roll in the owner's random stream, counting it as used
+    public long nextRoll() {
+        return rolls++;
+    }
+
+    public long rolls() {
+        return rolls;
+    }
+
+    public void setRolls(long rolls) {
+        this.rolls = rolls;
+    }
+
+    public StimTolerance tolerance() {
+        if (tolerance == null) {
+            tolerance = new StimTolerance();
+        }
+        return tolerance;
+    }
+
+    // The tolerance, or null if the owner never had any
+    @Nullable
+    public StimTolerance toleranceIfPresent() {
+        return tolerance;
+    }
+
+    // The tick the scheduler visits the owner at, or Long.MAX_VALUE if no wake-up is queued
+    public long wakeTick() {
+        return wakeTick;
+    }
+
+    public void setWakeTick(long wakeTick) {
+        this.wakeTick = wakeTick;
+    }
+
+    public void expectPredictedUse(int stimId) {
+        predictedUse = stimId;
+    }
+
+    // Whether the client predicted this use of the stim, counting the prediction as answered
+    public boolean takePredictedUse(int stimId) {
+        boolean predicted = predictedUse == stimId;
+        predictedUse = -1;
+        return predicted;
+    }
+
+    // Drop the pending doses, tolerance is kept
+    public void clear() {
+        size = 0;
+        relative = false;
+    }
+
+    // Replace all doses with ones read from disk. dueIn is relative to the tick the doses were saved at
+    // and stays that way until rebase() is called with the current game time.
+    // Older saves can hold several doses of the same stim, those are merged into the one due last.
+    public void loadRelative(int[] stimIds, int[] dueIn, int[] stackCounts, int[] outcomeIds, int maxDoses) {
+        int count = Math.min(Math.min(stimIds.length, dueIn.length), Math.min(stackCounts.length, outcomeIds.length));
+        clear();
+        for (int i = 0; i < count; i++) {
+            int stackCount = Math.max(1, stackCounts[i]);
+            int index = indexOf(stimIds[i]);
+            if (index >= 0) {
+                if (dueIn[i] > dueTicks[index]) {
+                    dueTicks[index] = dueIn[i];
+                    outcomes[index] = outcomeIds[i];
+                }
+                stacks[index] = Math.max(stacks[index], stackCount);
+            } else if (size < maxDoses) {
+                add(stimIds[i], dueIn[i], stackCount, outcomeIds[i]);
+            }
+        }
+        relative = size > 0;
+    }
+
+    // Anchor doses and tolerance that were loaded from disk to the current game time.
+    // Returns true if any dose was rebased, so the caller knows it has to schedule a wake-up.
+    public boolean rebase(long currentTick) {
+        if (tolerance != null) {
+            tolerance.rebase(currentTick);
+        }
+        if (!relative) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            dueTicks[i] += currentTick;
+        }
+        relative = false;
+        return true;
+    }
+
+    public boolean isRelative() {
+        return relative;
+    }
+
+    // Take over the doses of another record, e.g. when a player entity is recreated on respawn
+    public void copyFrom(StimDoses other) {
+        clear();
+        for (int i = 0; i < other.size; i++) {
+            add(other.stimIds[i], other.dueTicks[i], other.stacks[i], other.outcomes[i]);
+        }
+        relative = other.relative;
+        rolls = other.rolls;
+        if (other.tolerance != null) {
+            tolerance().copyFrom(other.tolerance);
+        } else {
+            tolerance = null;
+        }
+    }
+
+    private void removeAt(int index) {
+        int last = --size;
+        stimIds[index] = stimIds[last];
+        dueTicks[index] = dueTicks[last];
+        stacks[index] = stacks[last];
+        outcomes[index] = outcomes[last];
+    }
+}
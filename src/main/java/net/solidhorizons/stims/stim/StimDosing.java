@@ -0,0 +1,173 @@
+package net.solidhorizons.stims.stim;
+
+import net.minecraft.world.entity.LivingEntity;
+import net.solidhorizons.stims.audit.StimAuditLog;
+import net.solidhorizons.stims.config.StimsServerSettings;
+
+// Entry point for giving a stim to any living entity, be it a player using an injector, a medic station,
+// a dispenser, a command or a mob's own AI, and for applying its delayed after-effect
+public class StimDosing {
+
+    public enum Result {
+        DOSED,
+        // The stim is still pending and doesn't stack, the entity is at the pending dose limit, or an involuntary
+        // dose would have been an overdose
+        REJECTED,
+        // No datapack defines the stim
+        UNDEFINED
+    }
+
+    // Give the entity a dose of the stim, merging it with a pending dose of the same stim by its stacking rule.
+    // Server side only.
+    public static Result dose(LivingEntity entity, int stimId) {
+        return dose(entity, stimId, true);
+    }
+
+    // Doses the entity didn't ask for, e.g. from a medic station, are rejected instead of causing an overdose
+    public static Result dose(LivingEntity entity, int stimId, boolean voluntary) {
+        StimDefinition definition = StimDefinitions.get(stimId);
+        if (definition == null) {
+            return Result.UNDEFINED;
+        }
+
+        StimsServerSettings settings = StimsServerSettings.get();
+        long currentTick = entity.level().getGameTime();
+        int delayTicks = delayTicks(definition, stimId, settings);
+        long dueTick = currentTick + delayTicks;
+        int stacks = 1;
+        StimDoses doses = null;
+        if (definition.hasAfterEffect()) {
+            doses = StimCapability.get(entity);
+            if (doses == null) {
+                return Result.REJECTED;
+            }
+
+            int index = doses.indexOf(stimId);
+            if (index < 0) {
+                if (doses.size() >= settings.maxPendingDoses()) {
+                    return reject(entity, doses, stimId, 0);
+                }
+            } else {
+                switch (definition.stacking()) {
+                    case REJECT -> {
+                        return reject(entity, doses, stimId, doses.stacks(index));
+                    }
+                    case EXTEND -> {
+                        stacks = Math.min(doses.stacks(index) + 1, definition.maxStacks());
+                        long limit = currentTick + (long) definition.maxStacks() * delayTicks;
+                        dueTick = Math.min(doses.dueTick(index) + delayTicks, limit);
+                    }
+                    case ESCALATE -> stacks = Math.min(doses.stacks(index) + 1, definition.maxStacks());
+                    case REFRESH -> {
+                    }
+                }
+            }
+        }
+
+        // Tolerance is only looked at here, decayed from the last injection, so it costs nothing between doses
+        float potency = 1;
+        boolean overdose = false;
+        StimToleranceRule tolerance = definition.tolerance();
+        if (tolerance != null) {
+            StimDoses record = doses != null ? doses : StimCapability.get(entity);
+            if (record != null) {
+                float current = record.tolerance().get(stimId, currentTick, tolerance.halfLifeTicks());
+                if (!voluntary && tolerance.isOverdose(current + tolerance.perDose())) {
+                    return reject(entity, record, stimId, stacks);
+                }
+                float level = record.tolerance().add(stimId, currentTick, tolerance.halfLifeTicks(), tolerance.perDose());
+                potency = tolerance.potency(level - tolerance.perDose());
+                overdose = tolerance.isOverdose(level);
+            }
+        }
+
+        int outcome = definition.initial().roll(entity);
+        if (doses != null) {
+            StimScheduler.schedule(entity, doses, stimId, dueTick, stacks,
+                    definition.correlatedOutcomes() ? outcome : StimDoses.NO_OUTCOME);
+            StimSyncBatch.markDosesChanged(entity);
+        }
+
+        // Apply the initial effect immediately
+        float durationMultiplier = settings.durationMultiplier(stimId);
+        definition.initial().apply(entity, outcome, definition.amplifierBonus(stacks), potency * durationMultiplier);
+        StimMetrics.recordUse(stimId);
+        StimAuditLog.record(StimAuditLog.Event.USE, entity, stimId,
+                definition.initial().outcomeCount() > 1 ? outcome : StimDoses.NO_OUTCOME, stacks, rolls(entity));
+
+        if (overdose) {
+            StimStage stage = tolerance.overdose();
+            int overdoseOutcome = stage.roll(entity);
+            stage.apply(entity, overdoseOutcome, 0, durationMultiplier);
+            StimAuditLog.record(StimAuditLog.Event.OVERDOSE, entity, stimId,
+                    stage.outcomeCount() > 1 ? overdoseOutcome : StimDoses.NO_OUTCOME, stacks, rolls(entity));
+        }
+        return Result.DOSED;
+    }
+
+    // Whether dose() would give the entity the stim right now, without recording anything. Callers that retry
+    // on their own, like medic stations, check this first so a refusal isn't audited and counted every time.
+    public static boolean canDose(LivingEntity entity, int stimId, boolean voluntary) {
+        StimDefinition definition = StimDefinitions.get(stimId);
+        if (definition == null) {
+            return false;
+        }
+
+        StimDoses doses = StimCapability.get(entity);
+        if (definition.hasAfterEffect()) {
+            if (doses == null) {
+                return false;
+            }
+            if (doses.indexOf(stimId) < 0) {
+                if (doses.size() >= StimsServerSettings.get().maxPendingDoses()) {
+                    return false;
+                }
+            } else if (definition.stacking() == StimStacking.REJECT) {
+                return false;
+            }
+        }
+
+        StimToleranceRule tolerance = definition.tolerance();
+        StimTolerance record = doses != null ? doses.toleranceIfPresent() : null;
+        if (!voluntary && tolerance != null && record != null) {
+            float current = record.get(stimId, entity.level().getGameTime(), tolerance.halfLifeTicks());
+            return !tolerance.isOverdose(current + tolerance.perDose());
+        }
+        return true;
+    }
+
+    // Delay before the stim's after-effect, scaled by the server config
+    public static int delayTicks(StimDefinition definition, int stimId, StimsServerSettings settings) {
+        return Math.round(definition.delayTicks() * settings.delayMultiplier(stimId));
+    }
+
+    private static Result reject(LivingEntity entity, StimDoses doses, int stimId, int stacks) {
+        StimMetrics.recordRejected(stimId);
+        StimAuditLog.record(StimAuditLog.Event.REJECTED, entity, stimId, StimDoses.NO_OUTCOME, stacks, doses.rolls());
+        return Result.REJECTED;
+    }
+
+    private static long rolls(LivingEntity entity) {
+        StimDoses doses = StimCapability.get(entity);
+        return doses == null ? 0 : doses.rolls();
+    }
+
+    // Called by the StimScheduler once the delay of a dose has passed
+    public static void applyAfterEffect(LivingEntity entity, int stimId, int stacks, int outcome, long dueTick) {
+        // The dose is gone from the entity's record either way
+        StimSyncBatch.markDosesChanged(entity);
+        // The stim may have been removed by a datapack reload in the meantime
+        StimDefinition definition = StimDefinitions.get(stimId);
+        if (definition != null) {
+            StimStage after = definition.after();
+            // A reload can also have changed the outcomes since the initial roll
+            if (outcome < 0 || outcome >= after.outcomeCount()) {
+                outcome = after.roll(entity);
+            }
+            after.apply(entity, outcome, definition.amplifierBonus(stacks), StimsServerSettings.get().durationMultiplier(stimId));
+            StimMetrics.recordAfterEffect(stimId, entity.level().getGameTime() - dueTick);
+            StimAuditLog.record(StimAuditLog.Event.AFTER_EFFECT, entity, stimId,
+                    after.outcomeCount() > 1 ? outcome : StimDoses.NO_OUTCOME, stacks, rolls(entity));
+        }
+    }
+}
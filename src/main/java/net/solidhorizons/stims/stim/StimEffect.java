@@ -0,0 +1,7 @@
+package net.solidhorizons.stims.stim;
+
+import net.minecraft.world.effect.MobEffect;
+
+// A single mob effect a stim applies, with its duration already converted to ticks
+public record StimEffect(MobEffect effect, int durationTicks, int amplifier) {
+}
@@ -0,0 +1,12 @@
+package net.solidhorizons.stims.stim;
+
+// Receives the effects of a stim stage. On the server this is an EntityEffectSink, the benchmarks use their
+// own sink so StimStage can run without a level.
+public interface StimEffectSink {
+
+    // Remove all effects before the ones added afterwards are applied
+    void clearEffects();
+
+    // Add the effect with the amplifier bonus added and the duration multiplied by the duration factor
+    void addEffect(StimEffect effect, int amplifierBonus, float durationFactor);
+}
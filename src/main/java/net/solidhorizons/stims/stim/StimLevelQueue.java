@@ -0,0 +1,58 @@
+package net.solidhorizons.stims.stim;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// The stim state of one ServerLevel: its wake-up heap and the players whose doses need to be synced.
+// Both are single-writer and only touched by the thread that ticks the level, or by the server thread
+// between ticks. Other threads hand wake-ups over through the lock-free inbox instead, e.g. a player who
+// walks through a portal during another level's tick, and the owner moves them into the heap on its next tick.
+public class StimLevelQueue {
+
+    private final DoseQueue wakeups = new DoseQueue();
+    private final ConcurrentLinkedQueue<Wakeup> inbox = new ConcurrentLinkedQueue<>();
+    // ConcurrentLinkedQueue.size() walks the whole queue, and the metrics read the size every tick
+    private final AtomicInteger inboxSize = new AtomicInteger();
+    private final StimSyncBatch syncs = new StimSyncBatch();
+
+    private record Wakeup(long tick, int entityId) {
+    }
+
+    // Ask for the doses of the entity to be checked at the given tick, from any thread
+    public void post(long tick, int entityId) {
+        inbox.add(new Wakeup(tick, entityId));
+        inboxSize.incrementAndGet();
+    }
+
+    // Owner thread only
+    void drainInbox() {
+        Wakeup wakeup;
+        while ((wakeup = inbox.poll()) != null) {
+            inboxSize.decrementAndGet();
+            wakeups.add(wakeup.tick(), wakeup.entityId());
+        }
+    }
+
+    // Owner thread only
+    DoseQueue wakeups() {
+        return wakeups;
+    }
+
+    // Owner thread only
+    StimSyncBatch syncs() {
+        return syncs;
+    }
+
+    // Approximate number of pending wake-ups, for metrics
+    int size() {
+        return wakeups.size() + Math.max(0, inboxSize.get());
+    }
+
+    void clear() {
+        // Polled one by one so wake-ups posted meanwhile stay counted
+        while (inbox.poll() != null) {
+            inboxSize.decrementAndGet();
+        }
+        wakeups.clear();
+    }
+}
@@ -0,0 +1,249 @@
+package net.solidhorizons.stims.stim;
+
+import com.mojang.logging.LogUtils;
+import net.minecraft.Util;
+import net.minecraft.server.MinecraftServer;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.server.ServerStoppedEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.registries.ForgeRegistries;
+import net.solidhorizons.stims.item.custom.StimItem;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Cheap, lock-free instrumentation for the stim pipeline, readable through /stims stats.
+// Counters bumped from the level ticks are LongAdders, so levels ticking in parallel don't contend on them,
+// and the scheduler lateness is kept as a histogram with power-of-two buckets: bucket 0 holds on-time
+// effects, bucket n holds a lateness of [2^(n-1), 2^n) ticks.
+public class StimMetrics {
+
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    public static final int LATENESS_BUCKETS = 12;
+
+    // Per-stim counters, created in init() once the stim items are registered
+    private static volatile LongAdder[] uses = adders(0);
+    private static volatile LongAdder[] afterEffects = adders(0);
+    private static volatile LongAdder[] rejected = adders(0);
+    private static final LongAdder[] LATENESS = adders(LATENESS_BUCKETS);
+
+    // Time spent by the level ticks of the current server tick, which may run on several threads at once
+    private static final LongAdder LEVEL_TICK_NANOS = new LongAdder();
+
+    private static final AtomicLong TICKS = new AtomicLong();
+    private static final AtomicLong TICK_NANOS = new AtomicLong();
+    private static final AtomicLong MAX_TICK_NANOS = new AtomicLong();
+    private static volatile long lastTickNanos;
+    private static volatile int queueDepth;
+
+    // Ticks that ran out of budget with after-effects still due, and how far behind the scheduler fell
+    private static final LongAdder DEFERRED_TICKS = new LongAdder();
+    private static final AtomicLong MAX_BACKLOG_TICKS = new AtomicLong();
+
+    // CSV dumping, only touched from the server thread
+    private static int csvIntervalTicks;
+    private static Path csvFile;
+
+    // Called from common setup, after item registration
+    public static void init() {
+        uses = adders(StimItem.count());
+        afterEffects = adders(StimItem.count());
+        rejected = adders(StimItem.count());
+    }
+
+    public static void recordUse(int stimId) {
+        uses[stimId].increment();
+    }
+
+    // An injection refused by the stim's stacking rule or the pending dose limit
+    public static void recordRejected(int stimId) {
+        rejected[stimId].increment();
+    }
+
+    public static void recordAfterEffect(int stimId, long latenessTicks) {
+        afterEffects[stimId].increment();
+        LATENESS[latenessBucket(latenessTicks)].increment();
+    }
+
+    // The scheduler hit its tick budget with a wake-up still due, which has been due for backlogTicks
+    public static void recordDeferred(long backlogTicks) {
+        DEFERRED_TICKS.increment();
+        MAX_BACKLOG_TICKS.accumulateAndGet(backlogTicks, Math::max);
+    }
+
+    // Called by the scheduler at the end of every level tick with the time it spent
+    public static void recordLevelTick(long nanos) {
+        LEVEL_TICK_NANOS.add(nanos);
+    }
+
+    // Once per server tick, after all levels have ticked, with the time they spent together and the wake-ups left
+    private static void recordTick(long nanos, int pendingWakeups) {
+        TICKS.incrementAndGet();
+        TICK_NANOS.addAndGet(nanos);
+        MAX_TICK_NANOS.accumulateAndGet(nanos, Math::max);
+        lastTickNanos = nanos;
+        queueDepth = pendingWakeups;
+    }
+
+    public static long uses(int stimId) {
+        return uses[stimId].sum();
+    }
+
+    public static long afterEffects(int stimId) {
+        return afterEffects[stimId].sum();
+    }
+
+    public static long rejected(int stimId) {
+        return rejected[stimId].sum();
+    }
+
+    public static long lateness(int bucket) {
+        return LATENESS[bucket].sum();
+    }
+
+    // Lower bound of the lateness in ticks counted in the given bucket
+    public static long latenessBucketStart(int bucket) {
+        return bucket == 0 ? 0 : 1L << (bucket - 1);
+    }
+
+    public static long ticks() {
+        return TICKS.get();
+    }
+
+    public static long averageTickNanos() {
+        long ticks = TICKS.get();
+        return ticks == 0 ? 0 : TICK_NANOS.get() / ticks;
+    }
+
+    public static long maxTickNanos() {
+        return MAX_TICK_NANOS.get();
+    }
+
+    public static long lastTickNanos() {
+        return lastTickNanos;
+    }
+
+    public static int queueDepth() {
+        return queueDepth;
+    }
+
+    public static long deferredTicks() {
+        return DEFERRED_TICKS.sum();
+    }
+
+    public static long maxBacklogTicks() {
+        return MAX_BACKLOG_TICKS.get();
+    }
+
+    public static void reset() {
+        for (int i = 0; i < StimItem.count(); i++) {
+            uses[i].reset();
+            afterEffects[i].reset();
+            rejected[i].reset();
+        }
+        for (LongAdder bucket : LATENESS) {
+            bucket.reset();
+        }
+        TICKS.set(0);
+        TICK_NANOS.set(0);
+        MAX_TICK_NANOS.set(0);
+        DEFERRED_TICKS.reset();
+        MAX_BACKLOG_TICKS.set(0);
+    }
+
+    // Start appending a line of metrics to the given file every intervalTicks, or stop with an interval of 0
+    public static void dumpCsv(Path file, int intervalTicks) {
+        csvFile = file;
+        csvIntervalTicks = intervalTicks;
+    }
+
+    public static boolean isDumpingCsv() {
+        return csvIntervalTicks > 0;
+    }
+
+    @SubscribeEvent
+    public static void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.END) {
+            return;
+        }
+        recordTick(LEVEL_TICK_NANOS.sumThenReset(), StimScheduler.queueDepth());
+
+        if (csvIntervalTicks <= 0) {
+            return;
+        }
+        MinecraftServer server = event.getServer();
+        if (server.getTickCount() % csvIntervalTicks == 0) {
+            // Snapshot on the server thread, write on the IO pool
+            String header = csvHeader();
+            String line = csvLine(server);
+            Path file = csvFile;
+            Util.ioPool().execute(() -> appendCsv(file, header, line));
+        }
+    }
+
+    @SubscribeEvent
+    public static void onServerStopped(ServerStoppedEvent event) {
+        csvIntervalTicks = 0;
+        reset();
+    }
+
+    private static String csvHeader() {
+        StringBuilder builder = new StringBuilder("time,tick,queue_depth,avg_tick_nanos,max_tick_nanos,deferred_ticks,max_backlog_ticks");
+        for (int i = 0; i < StimItem.count(); i++) {
+            String name = ForgeRegistries.ITEMS.getKey(StimItem.byId(i)).getPath();
+            builder.append(',').append(name).append("_uses,").append(name).append("_rejected,").append(name).append("_after_effects");
+        }
+        for (int i = 0; i < LATENESS_BUCKETS; i++) {
+            builder.append(",late_").append(latenessBucketStart(i));
+        }
+        return builder.append('\n').toString();
+    }
+
+    private static String csvLine(MinecraftServer server) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(System.currentTimeMillis()).append(',').append(server.getTickCount())
+                .append(',').append(queueDepth).append(',').append(averageTickNanos()).append(',').append(maxTickNanos())
+                .append(',').append(deferredTicks()).append(',').append(maxBacklogTicks());
+        for (int i = 0; i < StimItem.count(); i++) {
+            builder.append(',').append(uses(i)).append(',').append(rejected(i)).append(',').append(afterEffects(i));
+        }
+        for (int i = 0; i < LATENESS_BUCKETS; i++) {
+            builder.append(',').append(lateness(i));
+        }
+        return builder.append('\n').toString();
+    }
+
+    private static void appendCsv(Path file, String header, String line) {
+        try {
+            if (!Files.exists(file)) {
+                Files.createDirectories(file.getParent());
+                line = header + line;
+            }
+            Files.writeString(file, line, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            LOGGER.error("Couldn't write stim metrics to {}", file, e);
+        }
+    }
+
+    private static LongAdder[] adders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    private static int latenessBucket(long latenessTicks) {
+        if (latenessTicks <= 0) {
+            return 0;
+        }
+        return Math.min(LATENESS_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(latenessTicks));
+    }
+}
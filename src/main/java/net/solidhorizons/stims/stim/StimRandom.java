@@ -0,0 +1,33 @@
+package net.solidhorizons.stims.stim;
+
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.entity.LivingEntity;
+import net.minecraft.util.Mth;
+
+import java.util.UUID;
+
+// Deterministic random stream for stim outcome rolls.
+// Roll n of an entity is a hash of the world seed, the entity's UUID and n, and the number of rolls made so far
+// is saved with its doses. Knowing the seed, the UUID and the roll count before an injection is enough to
+// recompute which outcome it got, e.g. when looking into a disputed death by Obdolbos.
+public class StimRandom {
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    // The next 64 random bits of the entity's stream
+    public static long next(LivingEntity entity) {
+        StimDoses doses = StimCapability.get(entity);
+        if (doses == null) {
+            // Only during respawn, when the old capability is already gone
+            return entity.getRandom().nextLong();
+        }
+        return roll(((ServerLevel) entity.level()).getSeed(), entity.getUUID(), doses.nextRoll());
+    }
+
+    public static long roll(long worldSeed, UUID uuid, long index) {
+        long stream = Mth.murmurHash3Mixer(worldSeed);
+        stream = Mth.murmurHash3Mixer(stream ^ uuid.getMostSignificantBits());
+        stream = Mth.murmurHash3Mixer(stream ^ uuid.getLeastSignificantBits());
+        return Mth.murmurHash3Mixer(stream + index * GOLDEN_GAMMA);
+    }
+}
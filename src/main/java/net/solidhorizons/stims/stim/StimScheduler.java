@@ -0,0 +1,133 @@
+package net.solidhorizons.stims.stim;
+
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.entity.LivingEntity;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.level.LevelEvent;
+import net.minecraftforge.event.server.ServerStoppedEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.solidhorizons.stims.config.StimsServerSettings;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Scheduler for delayed stim after-effects, sharded per ServerLevel.
+// The doses themselves live on each entity (see StimDoses), the scheduler only keeps a primitive min-heap
+// of wake-up times per level ordered by due tick (see StimLevelQueue). Every level tick only looks at the
+// head of its own heap and only visits the entities that actually have something due, and a tick with
+// nothing due allocates nothing. Levels share nothing on the tick path, so a server that ticks dimensions
+// in parallel doesn't serialize on the stim pipeline.
+// Draining is capped by a per-tick budget from the server config. When many after-effects come due at once,
+// whatever is over budget stays in the heap and is picked up on the next ticks, earliest due first.
+public class StimScheduler {
+
+    private static final Map<ServerLevel, StimLevelQueue> LEVELS = new ConcurrentHashMap<>();
+
+    // Record a dose on the entity, replacing a pending dose of the same stim, and make sure it is visited
+    // once it is due. Called from the thread ticking the entity's level, or the server thread between ticks.
+    public static void schedule(LivingEntity entity, StimDoses doses, int stimId, long dueTick, int stacks, int outcome) {
+        doses.put(stimId, dueTick, stacks, outcome);
+        // A dose that moved later keeps the old wake-up, which finds nothing due and wakes the entity again
+        wakeAt(entity, doses, dueTick);
+    }
+
+    // Make sure the doses of the entity are checked by the given tick in the level it is in. The entity
+    // already waits for a wake-up at doses.wakeTick(), so only an earlier tick is posted, and the level heap
+    // merges it with the queued one. Each entity has at most one wake-up per level however often it is dosed.
+    // Called from the thread ticking the entity's level, or the server thread between ticks.
+    public static void wakeAt(LivingEntity entity, StimDoses doses, long tick) {
+        if (tick < doses.wakeTick()) {
+            doses.setWakeTick(tick);
+            levelQueue((ServerLevel) entity.level()).post(tick, entity.getId());
+        }
+    }
+
+    static StimLevelQueue levelQueue(ServerLevel level) {
+        StimLevelQueue queue = LEVELS.get(level);
+        return queue != null ? queue : LEVELS.computeIfAbsent(level, key -> new StimLevelQueue());
+    }
+
+    // Pending wake-ups over all levels, for metrics
+    public static int queueDepth() {
+        int depth = 0;
+        for (StimLevelQueue queue : LEVELS.values()) {
+            depth += queue.size();
+        }
+        return depth;
+    }
+
+    // Pending wake-ups of one level
+    public static int queueDepth(ServerLevel level) {
+        StimLevelQueue queue = LEVELS.get(level);
+        return queue == null ? 0 : queue.size();
+    }
+
+    @SubscribeEvent
+    public static void onLevelTick(TickEvent.LevelTickEvent event) {
+        if (event.phase != TickEvent.Phase.END || !(event.level instanceof ServerLevel level)) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        long currentTick = level.getGameTime();
+        StimLevelQueue levelQueue = levelQueue(level);
+        levelQueue.drainInbox();
+        DoseQueue wakeups = levelQueue.wakeups();
+
+        // A budget of 0 means no limit
+        StimsServerSettings settings = StimsServerSettings.get();
+        int maxAfterEffects = settings.maxAfterEffectsPerTick();
+        long budgetNanos = settings.tickBudgetNanos();
+        int applied = 0;
+
+        // Only the entries at the head of the heap can be due
+        while (wakeups.peekDueTick() <= currentTick) {
+            // Always make some progress, even if the budget is smaller than a single player's doses
+            if (applied > 0 && ((maxAfterEffects > 0 && applied >= maxAfterEffects)
+                    || (budgetNanos > 0 && System.nanoTime() - start >= budgetNanos))) {
+                StimMetrics.recordDeferred(currentTick - wakeups.peekDueTick());
+                break;
+            }
+
+            int entityId = wakeups.peekEntityId();
+            wakeups.removeFirst();
+
+            // Entities that left the level got a wake-up in the level they joined, and the doses of unloaded mobs and
+            // offline players are saved with them and rescheduled once they are back. An entity id that got reused
+            // by another entity is harmless, that entity's own doses are checked.
+            if (!(level.getEntity(entityId) instanceof LivingEntity entity)) {
+                continue;
+            }
+            StimDoses doses = StimCapability.get(entity);
+            if (doses == null) {
+                continue;
+            }
+            applied += doses.drainDue(currentTick, entity, StimDosing::applyAfterEffect);
+            // The wake-up just removed was the entity's one in this level
+            doses.setWakeTick(Long.MAX_VALUE);
+            if (!doses.isEmpty()) {
+                doses.setWakeTick(doses.nextDueTick());
+                wakeups.add(doses.nextDueTick(), entityId);
+            }
+        }
+
+        // One dose sync per player for all of this tick's injections and after-effects
+        levelQueue.syncs().flush(level);
+
+        StimMetrics.recordLevelTick(System.nanoTime() - start);
+    }
+
+    @SubscribeEvent
+    public static void onLevelUnload(LevelEvent.Unload event) {
+        if (event.getLevel() instanceof ServerLevel level) {
+            LEVELS.remove(level);
+        }
+    }
+
+    @SubscribeEvent
+    public static void onServerStopped(ServerStoppedEvent event) {
+        // Don't carry pending wake-ups over into the next world on an integrated server
+        LEVELS.values().forEach(StimLevelQueue::clear);
+        LEVELS.clear();
+    }
+}
@@ -0,0 +1,29 @@
+package net.solidhorizons.stims.stim;
+
+import java.util.Locale;
+
+// What happens when a stim is injected again while its after-effect is still pending.
+// Set per stim with "stacking" in its definition, the limit for extend and escalate is "max_stacks".
+public enum StimStacking {
+    // Start over, the after-effect is due a full delay after the new injection
+    REFRESH,
+    // Push the pending after-effect back by another delay, up to max_stacks delays from now
+    EXTEND,
+    // Start over with one more stack, every extra stack raises the amplifier of the stim's effects by one
+    ESCALATE,
+    // Refuse the injection until the pending after-effect has hit
+    REJECT;
+
+    public static StimStacking byName(String name) {
+        for (StimStacking stacking : values()) {
+            if (stacking.getSerializedName().equals(name)) {
+                return stacking;
+            }
+        }
+        throw new IllegalArgumentException("Unknown stacking rule " + name);
+    }
+
+    public String getSerializedName() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
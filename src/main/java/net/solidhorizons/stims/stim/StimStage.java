@@ -0,0 +1,58 @@
+package net.solidhorizons.stims.stim;
+
+import net.minecraft.world.entity.LivingEntity;
+
+// One phase of a stim, either the initial rush or the delayed after-effect.
+// A stage has one or more weighted outcomes, each being a set of effects. Outcomes are picked from a
+// precomputed alias table, so a roll costs the same no matter how many outcomes a stim has.
+public class StimStage {
+
+    public static final StimStage EMPTY = new StimStage(false, new StimEffect[][]{new StimEffect[0]}, new double[]{1});
+
+    private final boolean clearEffects;
+    private final StimEffect[][] outcomes;
+    // Only needed with more than one outcome
+    private final AliasTable table;
+
+    public StimStage(boolean clearEffects, StimEffect[][] outcomes, double[] weights) {
+        this.clearEffects = clearEffects;
+        this.outcomes = outcomes;
+        this.table = outcomes.length > 1 ? new AliasTable(weights) : null;
+    }
+
+    public int outcomeCount() {
+        return outcomes.length;
+    }
+
+    // Pick an outcome for the entity from its StimRandom stream
+    public int roll(LivingEntity entity) {
+        return roll(StimRandom.next(entity));
+    }
+
+    // Pick an outcome from 64 random bits
+    public int roll(long bits) {
+        return table == null ? 0 : table.sample(bits);
+    }
+
+    // Apply the effects of the given outcome to the entity. The amplifier bonus is added to every effect, it comes
+    // from escalating stacks of the stim, and the durations are multiplied by the duration factor, which comes
+    // from tolerance and the server config.
+    public void apply(LivingEntity entity, int outcome, int amplifierBonus, float durationFactor) {
+        apply(new EntityEffectSink(entity), outcome, amplifierBonus, durationFactor);
+    }
+
+    // Hand the effects of the given outcome to the sink
+    public void apply(StimEffectSink sink, int outcome, int amplifierBonus, float durationFactor) {
+        if (clearEffects) {
+            sink.clearEffects();
+        }
+
+        for (StimEffect effect : outcomes[outcome]) {
+            sink.addEffect(effect, amplifierBonus, durationFactor);
+        }
+    }
+
+    public boolean isEmpty() {
+        return !clearEffects && outcomes.length == 1 && outcomes[0].length == 0;
+    }
+}
@@ -0,0 +1,42 @@
+package net.solidhorizons.stims.stim;
+
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.entity.LivingEntity;
+import net.solidhorizons.stims.network.ModMessages;
+import net.solidhorizons.stims.network.StimSyncS2CPacket;
+
+import java.util.Set;
+
+// Collects the players whose pending doses changed during a level tick and sends each of them a single
+// StimSyncS2CPacket at the end of it, however many injections and after-effects they had in that tick.
+// Players without the mod get nothing. There is one batch per level (see StimLevelQueue), only used by the
+// thread that ticks the level or by the server thread between ticks.
+public class StimSyncBatch {
+
+    private final Set<ServerPlayer> players = new ReferenceOpenHashSet<>();
+
+    // Send the entity's pending doses to its client at the end of the tick, if it is a player
+    public static void markDosesChanged(LivingEntity entity) {
+        if (entity instanceof ServerPlayer player) {
+            StimScheduler.levelQueue((ServerLevel) entity.level()).syncs().players.add(player);
+        }
+    }
+
+    // Called by the scheduler at the end of the level tick
+    public void flush(ServerLevel level) {
+        if (players.isEmpty()) {
+            return;
+        }
+
+        for (ServerPlayer player : players) {
+            // A player who logged out has nobody to send to, and one who changed dimension during the tick
+            // belongs to another level's thread now and got a full sync when joining it
+            if (!player.isRemoved() && player.level() == level && ModMessages.hasChannel(player)) {
+                ModMessages.sendToPlayer(StimSyncS2CPacket.of(player), player);
+            }
+        }
+        players.clear();
+    }
+}
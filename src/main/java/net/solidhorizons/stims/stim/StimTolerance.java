@@ -0,0 +1,143 @@
+package net.solidhorizons.stims.stim;
+
+import java.util.Arrays;
+
+// Per-entity tolerance to each stim, built up by injections and wearing off exponentially over time.
+// Only the level right after the last injection and the tick of that injection are stored, the current
+// level is worked out from the elapsed time when a stim is injected. Nothing runs per tick, so entities that
+// don't inject cost nothing no matter how many there are. Owned by StimDoses.
+public class StimTolerance {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    // Tolerance that has worn off to less than this is forgotten
+    private static final float NEGLIGIBLE = 0.001F;
+
+    private static final int[] NO_INTS = new int[0];
+    private static final float[] NO_FLOATS = new float[0];
+    private static final long[] NO_LONGS = new long[0];
+
+    private int size;
+    private int[] stimIds = NO_INTS;
+    private float[] values = NO_FLOATS;
+    private long[] updateTicks = NO_LONGS;
+
+    // Tolerance loaded from disk is anchored to the save time until the owner is back in a level
+    private boolean relative;
+
+    // Add the tolerance of another injection of the stim and return the new level
+    public float add(int stimId, long currentTick, int halfLifeTicks, float amount) {
+        int index = indexOf(stimId);
+        if (index < 0) {
+            removeNegligible(currentTick, halfLifeTicks);
+            index = append(stimId);
+        }
+        float value = decay(values[index], currentTick - updateTicks[index], halfLifeTicks) + amount;
+        values[index] = value;
+        updateTicks[index] = currentTick;
+        return value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int stimId(int index) {
+        return stimIds[index];
+    }
+
+    // Tolerance of the entry at the given index at the given tick
+    public float valueAt(int index, long currentTick, int halfLifeTicks) {
+        return decay(values[index], currentTick - updateTicks[index], halfLifeTicks);
+    }
+
+    // Tolerance to the stim at the given tick, without changing it
+    public float get(int stimId, long currentTick, int halfLifeTicks) {
+        int index = indexOf(stimId);
+        return index < 0 ? 0 : valueAt(index, currentTick, halfLifeTicks);
+    }
+
+    public boolean isRelative() {
+        return relative;
+    }
+
+    // Replace all tolerance with levels read from disk, valid at the tick they were saved at
+    public void loadRelative(int[] stimIds, float[] values) {
+        size = 0;
+        for (int i = 0; i < Math.min(stimIds.length, values.length); i++) {
+            if (indexOf(stimIds[i]) < 0 && values[i] >= NEGLIGIBLE) {
+                int index = append(stimIds[i]);
+                this.values[index] = values[i];
+                updateTicks[index] = 0;
+            }
+        }
+        relative = size > 0;
+    }
+
+    // Anchor tolerance that was loaded from disk to the current game time
+    public void rebase(long currentTick) {
+        if (!relative) {
+            return;
+        }
+        for (int i = 0; i < size; i++) {
+            updateTicks[i] += currentTick;
+        }
+        relative = false;
+    }
+
+    public void copyFrom(StimTolerance other) {
+        size = 0;
+        for (int i = 0; i < other.size; i++) {
+            int index = append(other.stimIds[i]);
+            values[index] = other.values[i];
+            updateTicks[index] = other.updateTicks[i];
+        }
+        relative = other.relative;
+    }
+
+    // Tolerance halves every half-life, a half-life of 0 means it never wears off
+    static float decay(float value, long elapsedTicks, int halfLifeTicks) {
+        if (halfLifeTicks <= 0 || elapsedTicks <= 0) {
+            return value;
+        }
+        return (float) (value * Math.pow(0.5, (double) elapsedTicks / halfLifeTicks));
+    }
+
+    private int indexOf(int stimId) {
+        for (int i = 0; i < size; i++) {
+            if (stimIds[i] == stimId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int append(int stimId) {
+        if (size == stimIds.length) {
+            int capacity = Math.max(INITIAL_CAPACITY, size * 2);
+            stimIds = Arrays.copyOf(stimIds, capacity);
+            values = Arrays.copyOf(values, capacity);
+            updateTicks = Arrays.copyOf(updateTicks, capacity);
+        }
+        stimIds[size] = stimId;
+        values[size] = 0;
+        updateTicks[size] = 0;
+        return size++;
+    }
+
+    // Forget stims whose tolerance has worn off. Each stim decays at its own rate, the entries of stims that are
+    // no longer defined use the given half-life. Only called when a new stim is added, so the list stays short.
+    private void removeNegligible(long currentTick, int defaultHalfLifeTicks) {
+        for (int i = size - 1; i >= 0; i--) {
+            StimDefinition definition = StimDefinitions.get(stimIds[i]);
+            int halfLifeTicks = definition != null && definition.tolerance() != null
+                    ? definition.tolerance().halfLifeTicks() : defaultHalfLifeTicks;
+            if (decay(values[i], currentTick - updateTicks[i], halfLifeTicks) < NEGLIGIBLE) {
+                int last = --size;
+                stimIds[i] = stimIds[last];
+                values[i] = values[last];
+                updateTicks[i] = updateTicks[last];
+            }
+        }
+    }
+}
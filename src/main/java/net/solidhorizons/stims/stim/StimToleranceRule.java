@@ -0,0 +1,17 @@
+package net.solidhorizons.stims.stim;
+
+// How a stim builds tolerance, from the "tolerance" block of its definition. Every injection adds perDose,
+// which halves every halfLifeTicks. Tolerance shortens the initial effects, dividing their duration by
+// 1 + potencyLoss * tolerance, and an injection that takes it to overdoseAt or above also gets the overdose
+// stage. An overdoseAt of 0 disables overdosing.
+public record StimToleranceRule(float perDose, int halfLifeTicks, float potencyLoss, float overdoseAt, StimStage overdose) {
+
+    // Duration multiplier for the initial effects of an injection taken at the given tolerance
+    public float potency(float tolerance) {
+        return 1 / (1 + potencyLoss * tolerance);
+    }
+
+    public boolean isOverdose(float tolerance) {
+        return overdoseAt > 0 && tolerance >= overdoseAt;
+    }
+}